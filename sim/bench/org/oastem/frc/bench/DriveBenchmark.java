@@ -0,0 +1,148 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.bench;
+
+import edu.wpi.first.wpilibj.GenericHID.Hand;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.oastem.frc.DualJoystick;
+import org.oastem.frc.control.DriveMath;
+import org.oastem.frc.control.FixedDrive;
+import org.oastem.frc.control.InputCurve;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per-tick joystick math: merging the two sticks, the throttle scale,
+ * clamping and the arcade mix from RobotMain.doArcadeDrive, then each
+ * mixing mode in doubles (DriveMath) against fixed point (FixedDrive).
+ * The fixed variants named FromDouble include the conversions in and
+ * out, as the drive loop pays them. DriveKernelBenchmark has the same
+ * cases without JMH, for runs with the JIT off.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DriveBenchmark {
+    private static final int SIZE = 1024; // power of two
+    
+    private double[] x = new double[SIZE];
+    private double[] y = new double[SIZE];
+    private double[] z = new double[SIZE];
+    private double[] out = new double[2];
+    private int[] fx = new int[SIZE];
+    private int[] fy = new int[SIZE];
+    private int[] fz = new int[SIZE];
+    private int[] fout = new int[2];
+    private FixedDrive fixed = new FixedDrive();
+    private InputCurve expo = new InputCurve(DriveMath.ZONE, 0.5);
+    private int i = 0;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(2013);
+        for (int k = 0; k < SIZE; k++) {
+            // a quarter of the samples sit in the deadband or at zero
+            x[k] = r.nextInt(4) == 0 ? 0.0 : r.nextDouble() * 2 - 1;
+            y[k] = r.nextInt(4) == 0 ? 0.01 : r.nextDouble() * 2 - 1;
+            z[k] = r.nextDouble() * 2 - 1;
+            fx[k] = FixedDrive.toFixed(x[k]);
+            fy[k] = FixedDrive.toFixed(y[k]);
+            fz[k] = FixedDrive.toFixed(z[k]);
+        }
+    }
+
+    private int next() {
+        return i = (i + 1) & (SIZE - 1);
+    }
+
+    @Benchmark
+    public double nonZero() {
+        int k = next();
+        return DualJoystick.nonZero(x[k], y[k], Hand.kLeft);
+    }
+
+    @Benchmark
+    public double scaleZ() {
+        return DriveMath.scaleZ(z[next()]);
+    }
+
+    @Benchmark
+    public double correct() {
+        int k = next();
+        return DriveMath.correct(x[k] + y[k]);
+    }
+
+    @Benchmark
+    public double[] arcade() {
+        int k = next();
+        DriveMath.arcade(x[k], y[k], DriveMath.scaleZ(z[k]), out);
+        return out;
+    }
+
+    @Benchmark
+    public int[] arcadeFixed() {
+        int k = next();
+        fixed.arcade(fx[k], fy[k], FixedDrive.scaleZ(fz[k]), fout);
+        return fout;
+    }
+
+    @Benchmark
+    public double arcadeFixedFromDouble() {
+        int k = next();
+        fixed.arcade(FixedDrive.toFixed(x[k]), FixedDrive.toFixed(y[k]),
+                FixedDrive.scaleZ(FixedDrive.toFixed(z[k])), fout);
+        return FixedDrive.toDouble(fout[0]) + FixedDrive.toDouble(fout[1]);
+    }
+
+    @Benchmark
+    public double[] tank() {
+        int k = next();
+        DriveMath.tank(x[k], y[k], DriveMath.scaleZ(z[k]), out);
+        return out;
+    }
+
+    @Benchmark
+    public int[] tankFixed() {
+        int k = next();
+        fixed.tank(fx[k], fy[k], FixedDrive.scaleZ(fz[k]), fout);
+        return fout;
+    }
+
+    @Benchmark
+    public double[] curvature() {
+        int k = next();
+        DriveMath.curvature(y[k], x[k], false, DriveMath.scaleZ(z[k]), out);
+        return out;
+    }
+
+    @Benchmark
+    public int[] curvatureFixed() {
+        int k = next();
+        fixed.curvature(fy[k], fx[k], false, FixedDrive.scaleZ(fz[k]), fout);
+        return fout;
+    }
+
+    @Benchmark
+    public double expo() {
+        return DriveMath.expo(DriveMath.deadband(x[next()]), 0.5);
+    }
+
+    @Benchmark
+    public int expoFixed() {
+        return expo.apply(fx[next()]);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.oastem.frc.ascent.shooting.GoalDriver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One GoalDriver control step, without the drive write.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GoalDriverBenchmark {
+    private static final int SIZE = 1024; // power of two
+    
+    private GoalDriver driver;
+    private double[] angle = new double[SIZE];
+    private double[] width = new double[SIZE];
+    private int i = 0;
+
+    @Setup
+    public void setup() {
+        driver = new GoalDriver();
+        Random r = new Random(2013);
+        for (int k = 0; k < SIZE; k++) {
+            angle[k] = (r.nextDouble() - 0.5) * 40;
+            width[k] = 60 + r.nextDouble() * 80;
+        }
+    }
+
+    @Benchmark
+    public double compute() {
+        int k = i = (i + 1) & (SIZE - 1);
+        driver.compute(angle[k], width[k]);
+        return driver.getLeft();
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.oastem.frc.ascent.external.FastMath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * FastMath, in both accuracies, against java.lang.Math. Inputs cycle
+ * through a table so nothing folds to a constant. The desktop runs Math
+ * as native intrinsics even under -Xint, while Squawk interprets it as
+ * bytecode, so on the robot compare FAST against ACCURATE, not against
+ * Math.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MathBenchmark {
+    private static final int SIZE = 1024; // power of two
+    
+    private double[] x = new double[SIZE];
+    private double[] y = new double[SIZE];
+    private double[] unit = new double[SIZE];
+    private double[] positive = new double[SIZE];
+    private int i = 0;
+
+    @Setup
+    public void setup() {
+        Random r = new Random(2013);
+        for (int k = 0; k < SIZE; k++) {
+            // the angles and ratios the camera code sees
+            x[k] = (r.nextDouble() - 0.5) * 8.0;
+            y[k] = r.nextDouble() - 0.5;
+            unit[k] = r.nextDouble() * 2 - 1;
+            positive[k] = r.nextDouble() * 1000;
+        }
+    }
+
+    private int next() {
+        return i = (i + 1) & (SIZE - 1);
+    }
+
+    @Benchmark
+    public double atanFast() {
+        return FastMath.atan(x[next()], FastMath.FAST);
+    }
+
+    @Benchmark
+    public double atanAccurate() {
+        return FastMath.atan(x[next()], FastMath.ACCURATE);
+    }
+
+    @Benchmark
+    public double atanMath() {
+        return Math.atan(x[next()]);
+    }
+
+    @Benchmark
+    public double copySignFast() {
+        int k = next();
+        return FastMath.copySign(x[k], y[k]);
+    }
+
+    @Benchmark
+    public double copySignMath() {
+        int k = next();
+        return Math.copySign(x[k], y[k]);
+    }
+
+    @Benchmark
+    public double atan2Fast() {
+        int k = next();
+        return FastMath.atan2(y[k], x[k], FastMath.FAST);
+    }
+
+    @Benchmark
+    public double atan2Accurate() {
+        int k = next();
+        return FastMath.atan2(y[k], x[k], FastMath.ACCURATE);
+    }
+
+    @Benchmark
+    public double atan2Math() {
+        int k = next();
+        return Math.atan2(y[k], x[k]);
+    }
+
+    @Benchmark
+    public double sinFast() {
+        int k = next();
+        return FastMath.sin(x[k], FastMath.FAST);
+    }
+
+    @Benchmark
+    public double sinAccurate() {
+        int k = next();
+        return FastMath.sin(x[k], FastMath.ACCURATE);
+    }
+
+    @Benchmark
+    public double sinMath() {
+        int k = next();
+        return Math.sin(x[k]);
+    }
+
+    @Benchmark
+    public double cosFast() {
+        int k = next();
+        return FastMath.cos(x[k], FastMath.FAST);
+    }
+
+    @Benchmark
+    public double cosAccurate() {
+        int k = next();
+        return FastMath.cos(x[k], FastMath.ACCURATE);
+    }
+
+    @Benchmark
+    public double cosMath() {
+        int k = next();
+        return Math.cos(x[k]);
+    }
+
+    @Benchmark
+    public double tanFast() {
+        int k = next();
+        return FastMath.tan(x[k], FastMath.FAST);
+    }
+
+    @Benchmark
+    public double tanAccurate() {
+        int k = next();
+        return FastMath.tan(x[k], FastMath.ACCURATE);
+    }
+
+    @Benchmark
+    public double tanMath() {
+        int k = next();
+        return Math.tan(x[k]);
+    }
+
+    @Benchmark
+    public double asinFast() {
+        int k = next();
+        return FastMath.asin(unit[k], FastMath.FAST);
+    }
+
+    @Benchmark
+    public double asinAccurate() {
+        int k = next();
+        return FastMath.asin(unit[k], FastMath.ACCURATE);
+    }
+
+    @Benchmark
+    public double asinMath() {
+        int k = next();
+        return Math.asin(unit[k]);
+    }
+
+    @Benchmark
+    public double acosFast() {
+        int k = next();
+        return FastMath.acos(unit[k], FastMath.FAST);
+    }
+
+    @Benchmark
+    public double acosAccurate() {
+        int k = next();
+        return FastMath.acos(unit[k], FastMath.ACCURATE);
+    }
+
+    @Benchmark
+    public double acosMath() {
+        int k = next();
+        return Math.acos(unit[k]);
+    }
+
+    @Benchmark
+    public double sqrtFast() {
+        int k = next();
+        return FastMath.sqrt(positive[k], FastMath.FAST);
+    }
+
+    @Benchmark
+    public double sqrtAccurate() {
+        int k = next();
+        return FastMath.sqrt(positive[k], FastMath.ACCURATE);
+    }
+
+    @Benchmark
+    public double sqrtMath() {
+        int k = next();
+        return Math.sqrt(positive[k]);
+    }
+
+    @Benchmark
+    public double hypotFast() {
+        int k = next();
+        return FastMath.hypot(x[k], y[k], FastMath.FAST);
+    }
+
+    @Benchmark
+    public double hypotAccurate() {
+        int k = next();
+        return FastMath.hypot(x[k], y[k], FastMath.ACCURATE);
+    }
+
+    @Benchmark
+    public double hypotMath() {
+        int k = next();
+        return Math.hypot(x[k], y[k]);
+    }
+
+    @Benchmark
+    public double expFast() {
+        int k = next();
+        return FastMath.exp(x[k], FastMath.FAST);
+    }
+
+    @Benchmark
+    public double expAccurate() {
+        int k = next();
+        return FastMath.exp(x[k], FastMath.ACCURATE);
+    }
+
+    @Benchmark
+    public double expMath() {
+        int k = next();
+        return Math.exp(x[k]);
+    }
+
+    @Benchmark
+    public double logFast() {
+        int k = next();
+        return FastMath.log(positive[k], FastMath.FAST);
+    }
+
+    @Benchmark
+    public double logAccurate() {
+        int k = next();
+        return FastMath.log(positive[k], FastMath.ACCURATE);
+    }
+
+    @Benchmark
+    public double logMath() {
+        int k = next();
+        return Math.log(positive[k]);
+    }
+}
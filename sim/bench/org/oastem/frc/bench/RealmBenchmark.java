@@ -0,0 +1,83 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.bench;
+
+import java.util.concurrent.TimeUnit;
+import org.oastem.frc.ascent.roborealm.RealmFrameListener;
+import org.oastem.frc.ascent.roborealm.RealmFrameReader;
+import org.oastem.frc.ascent.roborealm.RealmParserBenchmark;
+import org.oastem.frc.ascent.roborealm.RealmVariableParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The RoboRealm receive path per frame: splitting the byte stream into
+ * frames, then pulling the variables out, both with the byte parser and
+ * the old String way. Run with -prof gc to see the String path's garbage.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RealmBenchmark {
+    // socket reads rarely line up with frames, so feed odd-sized chunks
+    private static final int CHUNK = 100;
+    
+    private byte[] frame;
+    private byte[] stream;
+    private RealmFrameReader reader;
+    private RealmVariableParser parser;
+    private double[] slots = new double[RealmParserBenchmark.NAMES.length];
+    private int frames = 0;
+
+    @Setup
+    public void setup() {
+        frame = RealmParserBenchmark.SAMPLE.getBytes();
+        stream = new byte[frame.length * CHUNK];
+        for (int k = 0; k < CHUNK; k++) {
+            System.arraycopy(frame, 0, stream, k * frame.length, frame.length);
+        }
+        reader = new RealmFrameReader(null, new RealmFrameListener() {
+            public void frameReceived(byte[] buf, int off, int len) {
+                frames++;
+            }
+        });
+        parser = new RealmVariableParser();
+        for (int k = 0; k < RealmParserBenchmark.NAMES.length; k++) {
+            parser.addVariable(RealmParserBenchmark.NAMES[k]);
+        }
+    }
+
+    /**
+     * {@value #CHUNK} frames' worth of bytes through the framer.
+     */
+    @Benchmark
+    public int frame100() {
+        for (int off = 0; off < stream.length; off += CHUNK) {
+            reader.feed(stream, off, Math.min(CHUNK, stream.length - off));
+        }
+        return frames;
+    }
+
+    @Benchmark
+    public int parse() {
+        return parser.parse(frame, 0, frame.length, slots);
+    }
+
+    @Benchmark
+    public double parseWithStrings() {
+        return RealmParserBenchmark.parseWithStrings(new String(frame), slots);
+    }
+}
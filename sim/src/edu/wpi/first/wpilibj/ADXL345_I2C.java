@@ -0,0 +1,35 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj;
+
+public class ADXL345_I2C {
+
+    public static class Axes {
+        public final byte value;
+        public static final Axes kX = new Axes((byte) 0);
+        public static final Axes kY = new Axes((byte) 2);
+        public static final Axes kZ = new Axes((byte) 4);
+
+        private Axes(byte value) {
+            this.value = value;
+        }
+    }
+
+    public static class DataFormat_Range {
+        public final byte value;
+        public static final DataFormat_Range k2G = new DataFormat_Range((byte) 0);
+
+        private DataFormat_Range(byte value) {
+            this.value = value;
+        }
+    }
+
+    public ADXL345_I2C(int slot, DataFormat_Range range) {
+    }
+
+    public double getAcceleration(Axes axis) {
+        return 0.0;
+    }
+}
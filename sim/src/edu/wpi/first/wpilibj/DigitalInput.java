@@ -0,0 +1,27 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj;
+
+import org.oastem.frc.sim.SimHAL;
+
+public class DigitalInput {
+    private final int channel;
+
+    public DigitalInput(int channel) {
+        this.channel = channel;
+    }
+
+    public DigitalInput(int slot, int channel) {
+        this(channel);
+    }
+
+    public boolean get() {
+        return SimHAL.getDigital(channel);
+    }
+
+    public int getChannel() {
+        return channel;
+    }
+}
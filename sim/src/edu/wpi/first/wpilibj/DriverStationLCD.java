@@ -0,0 +1,77 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj;
+
+/**
+ * Keeps the six lines in memory; getText() shows what the driver would
+ * see.
+ */
+public class DriverStationLCD {
+    public static final int kLineLength = 21;
+    public static final int kNumLines = 6;
+
+    public static class Line {
+        public final int value;
+        public static final Line kMain6 = new Line(0);
+        public static final Line kUser1 = new Line(0);
+        public static final Line kUser2 = new Line(1);
+        public static final Line kUser3 = new Line(2);
+        public static final Line kUser4 = new Line(3);
+        public static final Line kUser5 = new Line(4);
+        public static final Line kUser6 = new Line(5);
+
+        private Line(int value) {
+            this.value = value;
+        }
+    }
+
+    private static DriverStationLCD instance;
+    private final char[][] pending = new char[kNumLines][kLineLength];
+    private final char[][] shown = new char[kNumLines][kLineLength];
+    private long updates = 0;
+
+    private DriverStationLCD() {
+        for (int l = 0; l < kNumLines; l++) {
+            for (int c = 0; c < kLineLength; c++) {
+                pending[l][c] = ' ';
+                shown[l][c] = ' ';
+            }
+        }
+    }
+
+    public static synchronized DriverStationLCD getInstance() {
+        if (instance == null) {
+            instance = new DriverStationLCD();
+        }
+        return instance;
+    }
+
+    public synchronized void println(Line line, int startingColumn, String text) {
+        int start = startingColumn - 1;
+        int n = Math.min(text.length(), kLineLength - start);
+        for (int i = 0; i < n; i++) {
+            pending[line.value][start + i] = text.charAt(i);
+        }
+    }
+
+    public synchronized void println(Line line, int startingColumn, StringBuffer text) {
+        println(line, startingColumn, text.toString());
+    }
+
+    public synchronized void updateLCD() {
+        for (int l = 0; l < kNumLines; l++) {
+            System.arraycopy(pending[l], 0, shown[l], 0, kLineLength);
+        }
+        updates++;
+    }
+
+    public synchronized String getText(int line) {
+        return new String(shown[line]);
+    }
+
+    public synchronized long getUpdates() {
+        return updates;
+    }
+}
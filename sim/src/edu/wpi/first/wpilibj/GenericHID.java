@@ -0,0 +1,62 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj;
+
+public abstract class GenericHID {
+
+    public static class Hand {
+        public final int value;
+        public static final Hand kLeft = new Hand(0);
+        public static final Hand kRight = new Hand(1);
+
+        private Hand(int value) {
+            this.value = value;
+        }
+    }
+
+    public final double getX() {
+        return getX(Hand.kRight);
+    }
+
+    public abstract double getX(Hand hand);
+
+    public final double getY() {
+        return getY(Hand.kRight);
+    }
+
+    public abstract double getY(Hand hand);
+
+    public abstract double getZ(Hand hand);
+
+    public double getZ() {
+        return getZ(Hand.kRight);
+    }
+
+    public abstract double getTwist();
+
+    public abstract double getThrottle();
+
+    public abstract double getRawAxis(int which);
+
+    public final boolean getTrigger() {
+        return getTrigger(Hand.kRight);
+    }
+
+    public abstract boolean getTrigger(Hand hand);
+
+    public final boolean getTop() {
+        return getTop(Hand.kRight);
+    }
+
+    public abstract boolean getTop(Hand hand);
+
+    public final boolean getBumper() {
+        return getBumper(Hand.kRight);
+    }
+
+    public abstract boolean getBumper(Hand hand);
+
+    public abstract boolean getRawButton(int button);
+}
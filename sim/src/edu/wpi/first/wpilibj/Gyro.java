@@ -0,0 +1,28 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj;
+
+import org.oastem.frc.sim.SimHAL;
+
+public class Gyro implements PIDSource {
+    private final int channel;
+    private double offset = 0.0;
+
+    public Gyro(int channel) {
+        this.channel = channel;
+    }
+
+    public double getAngle() {
+        return SimHAL.getGyro(channel) - offset;
+    }
+
+    public void reset() {
+        offset = SimHAL.getGyro(channel);
+    }
+
+    public double pidGet() {
+        return getAngle();
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj;
+
+import org.oastem.frc.sim.SimHAL;
+
+public class Joystick extends GenericHID {
+    public static final int kDefaultXAxis = 1;
+    public static final int kDefaultYAxis = 2;
+    public static final int kDefaultZAxis = 3;
+    public static final int kDefaultTwistAxis = 3;
+    public static final int kDefaultThrottleAxis = 4;
+    public static final int kDefaultTriggerButton = 1;
+    public static final int kDefaultTopButton = 2;
+
+    private final int port;
+
+    public Joystick(int port) {
+        this.port = port;
+    }
+
+    public double getX(Hand hand) {
+        return getRawAxis(kDefaultXAxis);
+    }
+
+    public double getY(Hand hand) {
+        return getRawAxis(kDefaultYAxis);
+    }
+
+    public double getZ(Hand hand) {
+        return getRawAxis(kDefaultZAxis);
+    }
+
+    public double getTwist() {
+        return getRawAxis(kDefaultTwistAxis);
+    }
+
+    public double getThrottle() {
+        return getRawAxis(kDefaultThrottleAxis);
+    }
+
+    public double getRawAxis(int axis) {
+        return SimHAL.getAxis(port, axis);
+    }
+
+    public boolean getTrigger(Hand hand) {
+        return getRawButton(kDefaultTriggerButton);
+    }
+
+    public boolean getTop(Hand hand) {
+        return getRawButton(kDefaultTopButton);
+    }
+
+    public boolean getBumper(Hand hand) {
+        return false;
+    }
+
+    public boolean getRawButton(int button) {
+        return SimHAL.getButton(port, button);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj;
+
+/**
+ * Runs the PID loop only when calculate() is called; the simulator has no
+ * background timer for it.
+ */
+public class PIDController {
+    private double p, i, d;
+    private final PIDSource source;
+    private final PIDOutput output;
+    private double setpoint = 0.0;
+    private double totalError = 0.0;
+    private double prevError = 0.0;
+    private boolean enabled = false;
+
+    public PIDController(double Kp, double Ki, double Kd, PIDSource source, PIDOutput output) {
+        this.p = Kp;
+        this.i = Ki;
+        this.d = Kd;
+        this.source = source;
+        this.output = output;
+    }
+
+    public synchronized void calculate() {
+        if (!enabled) {
+            return;
+        }
+        double error = setpoint - source.pidGet();
+        totalError += error;
+        double result = p * error + i * totalError + d * (error - prevError);
+        prevError = error;
+        output.pidWrite(result);
+    }
+
+    public synchronized void setSetpoint(double setpoint) {
+        this.setpoint = setpoint;
+    }
+
+    public synchronized double getSetpoint() {
+        return setpoint;
+    }
+
+    public synchronized void enable() {
+        enabled = true;
+    }
+
+    public synchronized void disable() {
+        enabled = false;
+        output.pidWrite(0);
+    }
+
+    public synchronized boolean isEnable() {
+        return enabled;
+    }
+
+    public synchronized void reset() {
+        disable();
+        totalError = 0.0;
+        prevError = 0.0;
+    }
+
+    public void free() {
+        disable();
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj;
+
+import org.oastem.frc.sim.SimHAL;
+
+public abstract class RobotBase {
+
+    public boolean isEnabled() {
+        return SimHAL.isEnabled();
+    }
+
+    public boolean isDisabled() {
+        return !SimHAL.isEnabled();
+    }
+
+    public boolean isAutonomous() {
+        return SimHAL.isAutonomous();
+    }
+
+    public boolean isTest() {
+        return SimHAL.isTest();
+    }
+
+    public boolean isOperatorControl() {
+        return !SimHAL.isAutonomous() && !SimHAL.isTest();
+    }
+
+    public abstract void startCompetition();
+}
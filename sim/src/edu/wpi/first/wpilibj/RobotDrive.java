@@ -0,0 +1,104 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj;
+
+/**
+ * Same mixing as the real RobotDrive: squared inputs by default, and the
+ * right side is inverted because its motors face the other way.
+ */
+public class RobotDrive {
+    private final SpeedController left;
+    private final SpeedController right;
+    private double maxOutput = 1.0;
+    private boolean safety = true;
+
+    public RobotDrive(int leftMotorChannel, int rightMotorChannel) {
+        this(new Victor(leftMotorChannel), new Victor(rightMotorChannel));
+    }
+
+    public RobotDrive(SpeedController leftMotor, SpeedController rightMotor) {
+        left = leftMotor;
+        right = rightMotor;
+    }
+
+    public void tankDrive(double leftValue, double rightValue) {
+        tankDrive(leftValue, rightValue, true);
+    }
+
+    public void tankDrive(double leftValue, double rightValue, boolean squaredInputs) {
+        leftValue = limit(leftValue);
+        rightValue = limit(rightValue);
+        if (squaredInputs) {
+            leftValue = square(leftValue);
+            rightValue = square(rightValue);
+        }
+        setLeftRightMotorOutputs(leftValue, rightValue);
+    }
+
+    public void arcadeDrive(double moveValue, double rotateValue) {
+        arcadeDrive(moveValue, rotateValue, true);
+    }
+
+    public void arcadeDrive(double moveValue, double rotateValue, boolean squaredInputs) {
+        moveValue = limit(moveValue);
+        rotateValue = limit(rotateValue);
+        if (squaredInputs) {
+            moveValue = square(moveValue);
+            rotateValue = square(rotateValue);
+        }
+        double leftMotorSpeed;
+        double rightMotorSpeed;
+        if (moveValue > 0.0) {
+            if (rotateValue > 0.0) {
+                leftMotorSpeed = moveValue - rotateValue;
+                rightMotorSpeed = Math.max(moveValue, rotateValue);
+            } else {
+                leftMotorSpeed = Math.max(moveValue, -rotateValue);
+                rightMotorSpeed = moveValue + rotateValue;
+            }
+        } else {
+            if (rotateValue > 0.0) {
+                leftMotorSpeed = -Math.max(-moveValue, rotateValue);
+                rightMotorSpeed = moveValue + rotateValue;
+            } else {
+                leftMotorSpeed = moveValue - rotateValue;
+                rightMotorSpeed = -Math.max(-moveValue, -rotateValue);
+            }
+        }
+        setLeftRightMotorOutputs(leftMotorSpeed, rightMotorSpeed);
+    }
+
+    public void setLeftRightMotorOutputs(double leftOutput, double rightOutput) {
+        left.set(limit(leftOutput) * maxOutput);
+        right.set(-limit(rightOutput) * maxOutput);
+    }
+
+    public void setMaxOutput(double maxOutput) {
+        this.maxOutput = maxOutput;
+    }
+
+    public void setSafetyEnabled(boolean enabled) {
+        safety = enabled;
+    }
+
+    public boolean isSafetyEnabled() {
+        return safety;
+    }
+
+    public void stopMotor() {
+        left.disable();
+        right.disable();
+    }
+
+    private static double limit(double num) {
+        if (num > 1.0) return 1.0;
+        if (num < -1.0) return -1.0;
+        return num;
+    }
+
+    private static double square(double v) {
+        return v >= 0.0 ? v * v : -(v * v);
+    }
+}
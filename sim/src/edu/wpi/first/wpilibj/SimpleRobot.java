@@ -0,0 +1,58 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj;
+
+import org.oastem.frc.sim.SimHAL;
+
+/**
+ * Same mode loop as the real SimpleRobot: each mode method is called once
+ * when the simulated Driver Station enters that mode. Returns when
+ * org.oastem.frc.sim.SimHAL is shut down.
+ */
+public class SimpleRobot extends RobotBase {
+
+    protected void robotInit() {
+    }
+
+    public void disabled() {
+    }
+
+    public void autonomous() {
+    }
+
+    public void operatorControl() {
+    }
+
+    public void test() {
+    }
+
+    public void startCompetition() {
+        robotInit();
+
+        while (SimHAL.isRunning()) {
+            if (isDisabled()) {
+                disabled();
+                while (isDisabled() && SimHAL.isRunning()) {
+                    Timer.delay(0.01);
+                }
+            } else if (isAutonomous()) {
+                autonomous();
+                while (isAutonomous() && isEnabled() && SimHAL.isRunning()) {
+                    Timer.delay(0.01);
+                }
+            } else if (isTest()) {
+                test();
+                while (isTest() && isEnabled() && SimHAL.isRunning()) {
+                    Timer.delay(0.01);
+                }
+            } else {
+                operatorControl();
+                while (isOperatorControl() && isEnabled() && SimHAL.isRunning()) {
+                    Timer.delay(0.01);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj;
+
+public interface SpeedController extends PIDOutput {
+    public double get();
+
+    public void set(double speed, byte syncGroup);
+
+    public void set(double speed);
+
+    public void disable();
+}
@@ -0,0 +1,26 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj;
+
+import org.oastem.frc.time.Clock;
+
+/**
+ * delay() sleeps on the robot Clock so that the mode loop in SimpleRobot
+ * follows virtual time when the simulator runs one.
+ */
+public class Timer {
+
+    public static void delay(final double seconds) {
+        Clock.getInstance().delay(seconds);
+    }
+
+    public static double getFPGATimestamp() {
+        return Utility.getFPGATime() / 1e6;
+    }
+
+    public static double getUsClock() {
+        return Utility.getFPGATime();
+    }
+}
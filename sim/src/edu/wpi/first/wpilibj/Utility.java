@@ -0,0 +1,19 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj;
+
+public class Utility {
+    private static final long BOOT = System.nanoTime();
+
+    private Utility() {
+    }
+
+    /**
+     * @return Microseconds since the simulated FPGA started.
+     */
+    public static long getFPGATime() {
+        return (System.nanoTime() - BOOT) / 1000;
+    }
+}
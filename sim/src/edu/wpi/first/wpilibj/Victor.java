@@ -0,0 +1,45 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj;
+
+import org.oastem.frc.sim.SimHAL;
+
+public class Victor implements SpeedController {
+    private final int channel;
+
+    public Victor(int channel) {
+        this.channel = channel;
+    }
+
+    public Victor(int slot, int channel) {
+        this(channel);
+    }
+
+    public double get() {
+        return SimHAL.getPwm(channel);
+    }
+
+    public void set(double speed, byte syncGroup) {
+        set(speed);
+    }
+
+    public void set(double speed) {
+        if (speed > 1.0) speed = 1.0;
+        if (speed < -1.0) speed = -1.0;
+        SimHAL.setPwm(channel, speed);
+    }
+
+    public void disable() {
+        SimHAL.setPwm(channel, 0.0);
+    }
+
+    public void pidWrite(double output) {
+        set(output);
+    }
+
+    public int getChannel() {
+        return channel;
+    }
+}
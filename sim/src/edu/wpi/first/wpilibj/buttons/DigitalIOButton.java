@@ -0,0 +1,19 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj.buttons;
+
+import edu.wpi.first.wpilibj.DigitalInput;
+
+public class DigitalIOButton {
+    private final DigitalInput input;
+
+    public DigitalIOButton(int port) {
+        input = new DigitalInput(port);
+    }
+
+    public boolean get() {
+        return !input.get();
+    }
+}
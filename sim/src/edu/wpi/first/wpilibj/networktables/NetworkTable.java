@@ -0,0 +1,53 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj.networktables;
+
+import java.util.Hashtable;
+
+public class NetworkTable {
+    private static final Hashtable tables = new Hashtable();
+    private final Hashtable values = new Hashtable();
+
+    public static synchronized NetworkTable getTable(String key) {
+        NetworkTable t = (NetworkTable) tables.get(key);
+        if (t == null) {
+            t = new NetworkTable();
+            tables.put(key, t);
+        }
+        return t;
+    }
+
+    public boolean isConnected() {
+        return true;
+    }
+
+    public boolean containsKey(String key) {
+        return values.containsKey(key);
+    }
+
+    public void putNumber(String key, double value) {
+        values.put(key, Double.valueOf(value));
+    }
+
+    public double getNumber(String key) {
+        Object v = values.get(key);
+        if (v == null) {
+            throw new IllegalArgumentException("Unknown key " + key);
+        }
+        return ((Double) v).doubleValue();
+    }
+
+    public void putBoolean(String key, boolean value) {
+        values.put(key, value ? Boolean.TRUE : Boolean.FALSE);
+    }
+
+    public boolean getBoolean(String key) {
+        Object v = values.get(key);
+        if (v == null) {
+            throw new IllegalArgumentException("Unknown key " + key);
+        }
+        return ((Boolean) v).booleanValue();
+    }
+}
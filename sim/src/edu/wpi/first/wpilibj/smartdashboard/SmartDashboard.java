@@ -0,0 +1,27 @@
+/*
+ * Simulator stand-in for the WPILibJ class of the same name. Only the
+ * parts this robot uses are here, backed by org.oastem.frc.sim.SimHAL.
+ */
+package edu.wpi.first.wpilibj.smartdashboard;
+
+import edu.wpi.first.wpilibj.networktables.NetworkTable;
+
+public class SmartDashboard {
+    private static final NetworkTable table = NetworkTable.getTable("SmartDashboard");
+
+    public static void putNumber(String key, double value) {
+        table.putNumber(key, value);
+    }
+
+    public static double getNumber(String key) {
+        return table.getNumber(key);
+    }
+
+    public static void putBoolean(String key, boolean value) {
+        table.putBoolean(key, value);
+    }
+
+    public static boolean getBoolean(String key) {
+        return table.getBoolean(key);
+    }
+}
@@ -0,0 +1,12 @@
+/*
+ * Simulator stand-in for the CLDC Generic Connection Framework, backed by
+ * java.net sockets. Only "socket://host:port" and "socket://:port" are
+ * supported.
+ */
+package javax.microedition.io;
+
+import java.io.IOException;
+
+public interface Connection {
+    public void close() throws IOException;
+}
@@ -0,0 +1,116 @@
+/*
+ * Simulator stand-in for the CLDC Generic Connection Framework, backed by
+ * java.net sockets. Only "socket://host:port" and "socket://:port" are
+ * supported.
+ */
+package javax.microedition.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+public class Connector {
+    private static final String SOCKET = "socket://";
+
+    private Connector() {
+    }
+
+    public static Connection open(String name) throws IOException {
+        if (!name.startsWith(SOCKET)) {
+            throw new ConnectionNotFoundException("Unsupported: " + name);
+        }
+        String address = name.substring(SOCKET.length());
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) {
+            throw new IllegalArgumentException("No port in " + name);
+        }
+        String host = address.substring(0, colon);
+        int port = Integer.parseInt(address.substring(colon + 1));
+
+        if (host.length() == 0) {
+            return new Server(new ServerSocket(port));
+        }
+        return new Client(new Socket(host, port));
+    }
+
+    private static class Client implements SocketConnection {
+        private final Socket socket;
+
+        Client(Socket socket) {
+            this.socket = socket;
+        }
+
+        public InputStream openInputStream() throws IOException {
+            return socket.getInputStream();
+        }
+
+        public OutputStream openOutputStream() throws IOException {
+            return socket.getOutputStream();
+        }
+
+        public void setSocketOption(byte option, int value) throws IOException {
+            switch (option) {
+                case DELAY:
+                    socket.setTcpNoDelay(value == 0);
+                    break;
+                case LINGER:
+                    socket.setSoLinger(value > 0, value);
+                    break;
+                case KEEPALIVE:
+                    socket.setKeepAlive(value != 0);
+                    break;
+                case RCVBUF:
+                    socket.setReceiveBufferSize(value);
+                    break;
+                case SNDBUF:
+                    socket.setSendBufferSize(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Bad option " + option);
+            }
+        }
+
+        public int getSocketOption(byte option) throws IOException {
+            switch (option) {
+                case DELAY:
+                    return socket.getTcpNoDelay() ? 0 : 1;
+                case LINGER:
+                    return socket.getSoLinger();
+                case KEEPALIVE:
+                    return socket.getKeepAlive() ? 1 : 0;
+                case RCVBUF:
+                    return socket.getReceiveBufferSize();
+                case SNDBUF:
+                    return socket.getSendBufferSize();
+                default:
+                    throw new IllegalArgumentException("Bad option " + option);
+            }
+        }
+
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    private static class Server implements ServerSocketConnection {
+        private final ServerSocket socket;
+
+        Server(ServerSocket socket) {
+            this.socket = socket;
+        }
+
+        public StreamConnection acceptAndOpen() throws IOException {
+            return new Client(socket.accept());
+        }
+
+        public int getLocalPort() throws IOException {
+            return socket.getLocalPort();
+        }
+
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
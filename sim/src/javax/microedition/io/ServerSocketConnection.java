@@ -0,0 +1,14 @@
+/*
+ * Simulator stand-in for the CLDC Generic Connection Framework, backed by
+ * java.net sockets. Only "socket://host:port" and "socket://:port" are
+ * supported.
+ */
+package javax.microedition.io;
+
+import java.io.IOException;
+
+public interface ServerSocketConnection extends Connection {
+    public StreamConnection acceptAndOpen() throws IOException;
+
+    public int getLocalPort() throws IOException;
+}
@@ -0,0 +1,20 @@
+/*
+ * Simulator stand-in for the CLDC Generic Connection Framework, backed by
+ * java.net sockets. Only "socket://host:port" and "socket://:port" are
+ * supported.
+ */
+package javax.microedition.io;
+
+import java.io.IOException;
+
+public interface SocketConnection extends StreamConnection {
+    public static final byte DELAY = 0;
+    public static final byte LINGER = 1;
+    public static final byte KEEPALIVE = 2;
+    public static final byte RCVBUF = 3;
+    public static final byte SNDBUF = 4;
+
+    public void setSocketOption(byte option, int value) throws IOException;
+
+    public int getSocketOption(byte option) throws IOException;
+}
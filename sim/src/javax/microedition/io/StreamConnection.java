@@ -0,0 +1,16 @@
+/*
+ * Simulator stand-in for the CLDC Generic Connection Framework, backed by
+ * java.net sockets. Only "socket://host:port" and "socket://:port" are
+ * supported.
+ */
+package javax.microedition.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public interface StreamConnection extends Connection {
+    public InputStream openInputStream() throws IOException;
+
+    public OutputStream openOutputStream() throws IOException;
+}
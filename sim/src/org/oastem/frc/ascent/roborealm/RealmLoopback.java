@@ -0,0 +1,180 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.ascent.roborealm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import javax.microedition.io.Connector;
+import javax.microedition.io.ServerSocketConnection;
+import javax.microedition.io.StreamConnection;
+
+/**
+ * A stand-in for RoboRealm that listens on a local port, so the request
+ * pipeline can be exercised without the camera laptop.
+ * <p>
+ * Every {@code </request>} it receives is answered with the canned reply
+ * a fixed delay after it arrived, standing in for RoboRealm's processing
+ * and network time. Requests are handled concurrently, like RoboRealm
+ * answering from its latest processed image, and the replies go out in
+ * the order the requests came in. Each reply also carries a SEQ variable,
+ * the number of the request it answers counting from 0, so a test can
+ * check which request a reply was matched to.
+ * </p>
+ */
+public class RealmLoopback implements Runnable {
+    private static final int QUEUE_SIZE = 16;
+    
+    private final int port;
+    private volatile int delay;
+    private volatile String reply;
+    private int answered = 0;
+    
+    private final long[] arrivals = new long[QUEUE_SIZE];
+    private int head = 0;
+    private int size = 0;
+    
+    private ServerSocketConnection ssc;
+    private StreamConnection conn;
+    private OutputStream out;
+    private RealmFrameReader requests;
+    private volatile boolean stop = false;
+    private volatile long served = 0;
+    private volatile long overflowed = 0;
+
+    /**
+     * @param port The port to listen on (RoboRealm uses 6060).
+     * @param delay Simulated processing time per request, in ms.
+     */
+    public RealmLoopback(int port, int delay) {
+        this.port = port;
+        this.delay = delay;
+        setReply("<WIDTH>100</WIDTH><ANGLE>0</ANGLE><HEIGHT>120</HEIGHT>"
+                + "<BLOB_COUNT>1</BLOB_COUNT>");
+    }
+
+    /**
+     * @param body The variable tags to answer with, without the
+     * {@code <response>} wrapper.
+     */
+    public void setReply(String body) {
+        reply = "<response>" + body;
+    }
+
+    /**
+     * @param delay Simulated processing time per request, in ms. Applies
+     * to requests not yet answered.
+     */
+    public void setDelay(int delay) {
+        this.delay = delay;
+    }
+
+    /**
+     * Starts listening on a background thread. Call before
+     * {@link RealmServer#connect()}.
+     */
+    public void start() throws IOException {
+        ssc = (ServerSocketConnection) Connector.open("socket://:" + port);
+        new Thread(this).start();
+    }
+
+    public void run() {
+        try {
+            conn = ssc.acceptAndOpen();
+            InputStream in = conn.openInputStream();
+            out = conn.openOutputStream();
+            
+            requests = new RealmFrameReader(in, new RealmFrameListener() {
+
+                public void frameReceived(byte[] buf, int off, int len) {
+                    enqueue(System.currentTimeMillis());
+                }
+            }, "</request>", RealmFrameReader.DEFAULT_READ_SIZE,
+                    RealmFrameReader.DEFAULT_FRAME_SIZE);
+            new Thread(requests).start();
+            
+            respond();
+        } catch (IOException e) {
+            if (!stop) e.printStackTrace();
+        }
+    }
+
+    private synchronized void enqueue(long now) {
+        if (size == QUEUE_SIZE) {
+            overflowed++;
+            return;
+        }
+        arrivals[(head + size) % QUEUE_SIZE] = now;
+        size++;
+        notify();
+    }
+
+    private synchronized long dequeue() throws InterruptedException {
+        while (size == 0 && !stop) {
+            wait();
+        }
+        if (stop) {
+            return -1;
+        }
+        long arrival = arrivals[head];
+        head = (head + 1) % QUEUE_SIZE;
+        size--;
+        return arrival;
+    }
+
+    private void respond() throws IOException {
+        while (!stop) {
+            long arrival;
+            try {
+                arrival = dequeue();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (arrival < 0) {
+                break;
+            }
+            
+            long done = arrival + delay;
+            long wait = done - System.currentTimeMillis();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    
+                }
+            }
+            
+            byte[] r = (reply + "<SEQ>" + answered++ + "</SEQ></response>").getBytes();
+            out.write(r, 0, r.length);
+            out.flush();
+            served++;
+        }
+    }
+
+    public void stop() {
+        stop = true;
+        synchronized (this) {
+            notify();
+        }
+        if (requests != null) requests.stop();
+        try {
+            if (conn != null) conn.close();
+            if (ssc != null) ssc.close();
+        } catch (IOException e) {
+            
+        }
+    }
+
+    public long getServed() {
+        return served;
+    }
+
+    /**
+     * @return Requests thrown away because the queue was full.
+     */
+    public long getOverflowed() {
+        return overflowed;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.ascent.roborealm;
+
+import java.io.PrintStream;
+
+/**
+ * Compares the cost per frame of {@link RealmVariableParser} against the
+ * old way of turning the reply into a String, cutting it up and calling
+ * {@code Double.parseDouble}. Desktop only; sim/build.xml, target
+ * interpreted, runs it with the JIT off, the nearest a PC gets to Squawk.
+ * <p>
+ * Usage: RealmParserBenchmark [frames]
+ * </p>
+ */
+public class RealmParserBenchmark {
+    public static final String SAMPLE =
+            "<response><WIDTH>87</WIDTH><ANGLE>-4.375</ANGLE>"
+            + "<HEIGHT>121.5</HEIGHT><BLOB_COUNT>2</BLOB_COUNT></response>";
+    public static final String[] NAMES = {"WIDTH", "ANGLE", "HEIGHT", "BLOB_COUNT"};
+
+    private RealmParserBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        run(System.out, args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+    }
+
+    public static void run(PrintStream out, int frames) {
+        byte[] frame = SAMPLE.getBytes();
+        double[] slots = new double[NAMES.length];
+        RealmVariableParser parser = new RealmVariableParser();
+        for (int i = 0; i < NAMES.length; i++) {
+            parser.addVariable(NAMES[i]);
+        }
+        
+        // warm up both paths
+        double sink = 0;
+        for (int i = 0; i < 20000; i++) {
+            parser.parse(frame, 0, frame.length, slots);
+            sink += parseWithStrings(new String(frame), slots);
+        }
+        
+        Runtime rt = Runtime.getRuntime();
+        
+        System.gc();
+        long freeBefore = rt.freeMemory();
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < frames; i++) {
+            parser.parse(frame, 0, frame.length, slots);
+            sink += slots[0];
+        }
+        long parserTime = System.currentTimeMillis() - start;
+        long parserAlloc = freeBefore - rt.freeMemory();
+        
+        System.gc();
+        freeBefore = rt.freeMemory();
+        start = System.currentTimeMillis();
+        for (int i = 0; i < frames; i++) {
+            sink += parseWithStrings(new String(frame), slots);
+        }
+        long stringTime = System.currentTimeMillis() - start;
+        long stringAlloc = freeBefore - rt.freeMemory();
+        
+        out.println("RealmParserBenchmark: " + frames + " frames");
+        report(out, "byte parser", parserTime, parserAlloc, frames);
+        report(out, "String path", stringTime, stringAlloc, frames);
+        if (sink == 1.0) {
+            out.println(); // keeps the loops from being optimized away
+        }
+    }
+
+    private static void report(PrintStream out, String name, long millis,
+            long alloc, int frames) {
+        out.println("  " + name + ": " + (millis * 1000000 / frames)
+                + " ns/frame, ~" + (alloc > 0 ? alloc / frames : 0)
+                + " bytes/frame (GC may hide some)");
+    }
+
+    /**
+     * The String-based path this parser replaces. Public so the desktop
+     * JMH suite can measure it too; the slots are in {@link #NAMES} order.
+     */
+    public static double parseWithStrings(String resp, double[] slots) {
+        for (int i = 0; i < NAMES.length; i++) {
+            String open = "<" + NAMES[i] + ">";
+            int s = resp.indexOf(open);
+            if (s < 0) continue;
+            int e = resp.indexOf("</" + NAMES[i] + ">", s);
+            if (e < 0) continue;
+            slots[i] = Double.parseDouble(resp.substring(s + open.length(), e).trim());
+        }
+        return slots[0];
+    }
+}
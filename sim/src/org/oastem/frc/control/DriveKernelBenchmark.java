@@ -0,0 +1,100 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.control;
+
+import java.io.PrintStream;
+import java.util.Random;
+
+/**
+ * Compares the cost per tick of the {@link FixedDrive} kernel against the
+ * {@link DriveMath} double path, for each mixing mode, including the
+ * conversions in and out the drive loop pays. Desktop only, like
+ * RealmParserBenchmark; sim/build.xml, target interpreted, runs it with
+ * the JIT off. The JMH suite has the same cases.
+ * <p>
+ * Usage: DriveKernelBenchmark [ticks]
+ * </p>
+ */
+public class DriveKernelBenchmark {
+    private static final int SIZE = 256; // power of two
+
+    private DriveKernelBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        run(System.out, args.length > 0 ? Integer.parseInt(args[0]) : 200000);
+    }
+
+    public static void run(PrintStream out, int ticks) {
+        double[] x = new double[SIZE];
+        double[] y = new double[SIZE];
+        double[] z = new double[SIZE];
+        Random r = new Random(2013);
+        for (int k = 0; k < SIZE; k++) {
+            x[k] = r.nextDouble() * 2 - 1;
+            y[k] = r.nextDouble() * 2 - 1;
+            z[k] = r.nextDouble() * 2 - 1;
+        }
+        FixedDrive fixed = new FixedDrive(new InputCurve(DriveMath.ZONE, 0.5),
+                new InputCurve(DriveMath.ZONE, 0.5));
+        double[] dout = new double[2];
+        int[] iout = new int[2];
+
+        out.println("DriveKernelBenchmark: " + ticks + " ticks");
+        double sink = 0;
+        for (int pass = 0; pass < 2; pass++) { // the first pass warms up
+            int n = pass == 0 ? Math.min(ticks, 20000) : ticks;
+            for (int mode = 0; mode < 3; mode++) {
+                long start = System.currentTimeMillis();
+                for (int i = 0; i < n; i++) {
+                    int k = i & (SIZE - 1);
+                    double scale = DriveMath.scaleZ(z[k]);
+                    if (mode == 0) {
+                        DriveMath.arcade(DriveMath.expo(x[k], 0.5),
+                                DriveMath.expo(y[k], 0.5), scale, dout);
+                    } else if (mode == 1) {
+                        DriveMath.tank(DriveMath.expo(x[k], 0.5),
+                                DriveMath.expo(y[k], 0.5), scale, dout);
+                    } else {
+                        DriveMath.curvature(DriveMath.expo(y[k], 0.5),
+                                DriveMath.expo(x[k], 0.5), false, scale, dout);
+                    }
+                    sink += dout[0];
+                }
+                long doubleTime = System.currentTimeMillis() - start;
+
+                start = System.currentTimeMillis();
+                for (int i = 0; i < n; i++) {
+                    int k = i & (SIZE - 1);
+                    int fx = FixedDrive.toFixed(x[k]);
+                    int fy = FixedDrive.toFixed(y[k]);
+                    int scale = FixedDrive.scaleZ(FixedDrive.toFixed(z[k]));
+                    if (mode == 0) {
+                        fixed.arcade(fx, fy, scale, iout);
+                    } else if (mode == 1) {
+                        fixed.tank(fx, fy, scale, iout);
+                    } else {
+                        fixed.curvature(fy, fx, false, scale, iout);
+                    }
+                    sink += FixedDrive.toDouble(iout[0]) + FixedDrive.toDouble(iout[1]);
+                }
+                long fixedTime = System.currentTimeMillis() - start;
+
+                if (pass == 1) {
+                    String name = mode == 0 ? "arcade" : mode == 1 ? "tank" : "curvature";
+                    report(out, name + " double", doubleTime, ticks);
+                    report(out, name + " fixed", fixedTime, ticks);
+                }
+            }
+        }
+        if (sink == 1.0) {
+            out.println(); // keeps the loops from being optimized away
+        }
+    }
+
+    private static void report(PrintStream out, String name, long millis, int ticks) {
+        out.println("  " + name + ": " + (millis * 1000000 / ticks) + " ns/tick");
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.control;
+
+/**
+ * The {@link DriveMath} mixing (arcade, tank and curvature) in fixed
+ * point, for the drive loop. Squawk interprets every double operation,
+ * while int arithmetic maps straight onto the PowerPC, so sticks are
+ * converted once on the way in ({@link #toFixed(double)}) and once on the
+ * way out ({@link #toDouble(int)}) and everything between is integer.
+ * Values are in units of 1/{@link #ONE}; stick deadband and response
+ * curves come from an {@link InputCurve} per axis.
+ * <p>
+ * With linear curves the results are within {@link #TOLERANCE} of the
+ * DriveMath double path for sticks in [-1, 1], except for a stick within
+ * 1/ONE of the deadband edge, where the two may round it to opposite
+ * sides. sim/build.xml, target accuracy, checks this.
+ * </p>
+ * <p>
+ * Desktop only for now: the robot drives through DriveMath, and this
+ * stays out of the robot image until a measurement on Squawk shows the
+ * int path pays for itself there. DriveKernelBenchmark is the
+ * comparison to run.
+ * </p>
+ */
+public class FixedDrive {
+    /** Fractional bits. */
+    public static final int SHIFT = 14;
+    /** 1.0 in fixed point. */
+    public static final int ONE = 1 << SHIFT;
+    /** The most an output differs from the DriveMath double path. */
+    public static final double TOLERANCE = 1.0 / 4096;
+
+    private static final int HALF = ONE >> 1;
+    private static final double UNIT = 1.0 / ONE;
+
+    private InputCurve move;
+    private InputCurve turn;
+
+    /**
+     * Linear curves with the {@link DriveMath#ZONE} deadband, the same
+     * response as DriveMath.
+     */
+    public FixedDrive() {
+        this(new InputCurve(), new InputCurve());
+    }
+
+    /**
+     * @param move Curve for the forward stick.
+     * @param turn Curve for the turn stick.
+     */
+    public FixedDrive(InputCurve move, InputCurve turn) {
+        this.move = move;
+        this.turn = turn;
+    }
+
+    public void setCurves(InputCurve move, InputCurve turn) {
+        this.move = move;
+        this.turn = turn;
+    }
+
+    /**
+     * @return The nearest fixed point value.
+     */
+    public static int toFixed(double v) {
+        return (int) (v < 0 ? v * ONE - 0.5 : v * ONE + 0.5);
+    }
+
+    public static double toDouble(int v) {
+        return v * UNIT;
+    }
+
+    /**
+     * {@link DriveMath#scaleZ(double)} in fixed point.
+     */
+    public static int scaleZ(int rawZ) {
+        return (ONE - rawZ) >> 1;
+    }
+
+    /**
+     * {@link DriveMath#arcade(double, double, double, double[])}.
+     *
+     * @param x Stick X (turn).
+     * @param y Stick Y (forward is negative).
+     * @param scale From {@link #scaleZ(int)}.
+     * @param out Gets left in [0] and right in [1].
+     */
+    public void arcade(int x, int y, int scale, int[] out) {
+        int left = move.apply(y);
+        int right = left;
+
+        int t = turn.apply(x);
+        if (t != 0) {
+            left += t;
+            right -= t;
+            // clamp; inline, as every call costs on Squawk
+            if (left > ONE) {
+                left = ONE;
+            } else if (left < -ONE) {
+                left = -ONE;
+            }
+            if (right > ONE) {
+                right = ONE;
+            } else if (right < -ONE) {
+                right = -ONE;
+            }
+        }
+
+        out[0] = -((left * scale + HALF) >> SHIFT);
+        out[1] = -((right * scale + HALF) >> SHIFT);
+    }
+
+    /**
+     * {@link DriveMath#tank(double, double, double, double[])}. Both sides
+     * use the forward curve.
+     *
+     * @param l Left stick Y (forward is negative).
+     * @param r Right stick Y.
+     * @param scale From {@link #scaleZ(int)}.
+     * @param out Gets left in [0] and right in [1].
+     */
+    public void tank(int l, int r, int scale, int[] out) {
+        out[0] = -((move.apply(l) * scale + HALF) >> SHIFT);
+        out[1] = -((move.apply(r) * scale + HALF) >> SHIFT);
+    }
+
+    /**
+     * {@link DriveMath#curvature(double, double, boolean, double, double[])}.
+     *
+     * @param throttle Stick Y (forward is negative).
+     * @param curve Stick X.
+     * @param quickTurn Turn without moving forward.
+     * @param scale From {@link #scaleZ(int)}.
+     * @param out Gets left in [0] and right in [1].
+     */
+    public void curvature(int throttle, int curve, boolean quickTurn, int scale, int[] out) {
+        int m = move.apply(throttle);
+        int t = turn.apply(curve);
+        if (!quickTurn) {
+            t = (t * (m < 0 ? -m : m) + HALF) >> SHIFT;
+        }
+        int left = m + t;
+        int right = m - t;
+
+        int max = left < 0 ? -left : left;
+        int r = right < 0 ? -right : right;
+        if (r > max) {
+            max = r;
+        }
+        if (max > ONE) {
+            left = (left << SHIFT) / max;
+            right = (right << SHIFT) / max;
+        }
+
+        out[0] = -((left * scale + HALF) >> SHIFT);
+        out[1] = -((right * scale + HALF) >> SHIFT);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.control;
+
+/**
+ * A stick response curve for {@link FixedDrive}: a deadband, then
+ * {@link DriveMath#expo(double, double)}. The curve is worked out once,
+ * into a table over the stick's magnitude, and looked up with integer
+ * interpolation, so applying it costs no floating point.
+ */
+public class InputCurve {
+    private static final int SEGMENTS = 256;
+    // stick units per table segment, as a shift
+    private static final int CELL_SHIFT = FixedDrive.SHIFT - 8;
+    private static final int CELL_MASK = (1 << CELL_SHIFT) - 1;
+
+    private final int zone;
+    private final boolean linear;
+    private final int[] table = new int[SEGMENTS + 1];
+
+    /**
+     * A linear curve with the {@link DriveMath#ZONE} deadband.
+     */
+    public InputCurve() {
+        this(DriveMath.ZONE, 0.0);
+    }
+
+    /**
+     * @param zone Stick travel ignored around center, 0 to 1.
+     * @param expo 0 is linear, 1 is cubic.
+     */
+    public InputCurve(double zone, double expo) {
+        this.zone = FixedDrive.toFixed(zone);
+        this.linear = expo == 0.0;
+        for (int i = 0; i <= SEGMENTS; i++) {
+            table[i] = FixedDrive.toFixed(DriveMath.expo((double) i / SEGMENTS, expo));
+        }
+    }
+
+    /**
+     * @param v A stick value in {@link FixedDrive} fixed point.
+     * @return The shaped value, 0 inside the deadband; past full travel
+     * it stays at full power.
+     */
+    public int apply(int v) {
+        int m = v < 0 ? -v : v;
+        if (m <= zone) {
+            return 0;
+        }
+        if (linear && m <= FixedDrive.ONE) {
+            return v; // what the table would give
+        }
+
+        int r;
+        int i = m >> CELL_SHIFT;
+        if (i >= SEGMENTS) {
+            r = table[SEGMENTS];
+        } else {
+            int a = table[i];
+            r = a + (((table[i + 1] - a) * (m & CELL_MASK)) >> CELL_SHIFT);
+        }
+        return v < 0 ? -r : r;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.sim;
+
+import java.util.Random;
+import org.oastem.frc.control.DriveMath;
+import org.oastem.frc.control.FixedDrive;
+import org.oastem.frc.control.InputCurve;
+
+/**
+ * Holds the fixed point drive kernel to {@link FixedDrive#TOLERANCE}
+ * against the DriveMath double path: every mixing mode with the default
+ * curves, and the response curves on their own. Sticks within 1/ONE of
+ * the deadband edge are skipped, as documented. Exits non-zero if the
+ * tolerance is broken.
+ * <p>
+ * Usage: DriveAccuracy [samples per check]
+ * </p>
+ */
+public class DriveAccuracy {
+    private static final int ARCADE = 0, TANK = 1, CURVATURE = 2, QUICK_TURN = 3;
+    private static final String[] MODES = {"arcade", "tank", "curvature", "quick turn"};
+    private static final double[] EXPOS = {0.0, 0.25, 0.5, 1.0};
+    private static final double[] STICKS = {0.0, 1.0, -1.0, 0.5, -0.5,
+        DriveMath.ZONE, -DriveMath.ZONE, 0.999, -0.999};
+
+    private final Random random = new Random(2013);
+    private final int samples;
+    private final FixedDrive fixed = new FixedDrive();
+    private final double[] want = new double[2];
+    private final int[] got = new int[2];
+    private int failures = 0;
+
+    public DriveAccuracy(int samples) {
+        this.samples = samples;
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        DriveAccuracy check = new DriveAccuracy(n);
+        check.run();
+        System.exit(check.failures == 0 ? 0 : 1);
+    }
+
+    public void run() {
+        System.out.println("kernel        worst error   bound        at");
+        for (int mode = 0; mode < MODES.length; mode++) {
+            checkMode(mode);
+        }
+        for (int i = 0; i < EXPOS.length; i++) {
+            checkCurve(EXPOS[i]);
+        }
+        System.out.println(failures == 0 ? "All within tolerance" : failures + " over tolerance");
+    }
+
+    private void checkMode(int mode) {
+        double worst = 0;
+        String at = "";
+        for (int i = 0; i < samples; i++) {
+            double a = stick(i, 0);
+            double b = stick(i, 1);
+            double z = stick(i, 2);
+            if (nearEdge(a) || nearEdge(b)) {
+                continue;
+            }
+
+            double scale = DriveMath.scaleZ(z);
+            int fa = FixedDrive.toFixed(a);
+            int fb = FixedDrive.toFixed(b);
+            int fscale = FixedDrive.scaleZ(FixedDrive.toFixed(z));
+            switch (mode) {
+                case ARCADE:
+                    DriveMath.arcade(a, b, scale, want);
+                    fixed.arcade(fa, fb, fscale, got);
+                    break;
+                case TANK:
+                    DriveMath.tank(a, b, scale, want);
+                    fixed.tank(fa, fb, fscale, got);
+                    break;
+                default:
+                    boolean quick = mode == QUICK_TURN;
+                    DriveMath.curvature(a, b, quick, scale, want);
+                    fixed.curvature(fa, fb, quick, fscale, got);
+                    break;
+            }
+
+            for (int side = 0; side < 2; side++) {
+                double err = Math.abs(FixedDrive.toDouble(got[side]) - want[side]);
+                if (err > worst) {
+                    worst = err;
+                    at = a + ", " + b + ", z " + z;
+                }
+            }
+        }
+        report(MODES[mode], worst, at);
+    }
+
+    private void checkCurve(double expo) {
+        InputCurve curve = new InputCurve(DriveMath.ZONE, expo);
+        double worst = 0;
+        String at = "";
+        for (int i = 0; i < samples; i++) {
+            double v = stick(i, 0);
+            if (nearEdge(v)) {
+                continue;
+            }
+            double want = DriveMath.expo(DriveMath.deadband(v), expo);
+            double err = Math.abs(FixedDrive.toDouble(curve.apply(FixedDrive.toFixed(v))) - want);
+            if (err > worst) {
+                worst = err;
+                at = String.valueOf(v);
+            }
+        }
+        report("expo " + expo, worst, at);
+    }
+
+    /**
+     * The special sticks first, then uniform over [-1, 1].
+     */
+    private double stick(int i, int axis) {
+        if (i < STICKS.length * STICKS.length) {
+            int k = axis == 0 ? i % STICKS.length : (i / STICKS.length) % STICKS.length;
+            return STICKS[k];
+        }
+        return random.nextDouble() * 2 - 1;
+    }
+
+    private static boolean nearEdge(double v) {
+        return Math.abs(Math.abs(v) - DriveMath.ZONE) < 1.0 / FixedDrive.ONE;
+    }
+
+    private void report(String name, double worst, String at) {
+        boolean ok = worst <= FixedDrive.TOLERANCE;
+        if (!ok) failures++;
+        StringBuffer sb = new StringBuffer();
+        pad(sb, name, 14);
+        pad(sb, String.format("%.2e", worst), 14);
+        pad(sb, String.format("%.2e", FixedDrive.TOLERANCE), 13);
+        sb.append(at);
+        if (!ok) sb.append("  OVER");
+        System.out.println(sb);
+    }
+
+    private static void pad(StringBuffer sb, String s, int width) {
+        sb.append(s);
+        for (int i = s.length(); i < width; i++) sb.append(' ');
+    }
+}
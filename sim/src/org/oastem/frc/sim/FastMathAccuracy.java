@@ -0,0 +1,227 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.sim;
+
+import java.util.Random;
+import org.oastem.frc.ascent.external.FastMath;
+
+/**
+ * Holds every FastMath function, in both accuracies, to the error bound
+ * its javadoc promises, using StrictMath as the reference. Samples each
+ * function's whole domain (log-uniform over the exponent range, plus the
+ * special values) and exits non-zero if any bound is broken.
+ * <p>
+ * Usage: FastMathAccuracy [samples per function]
+ * </p>
+ */
+public class FastMathAccuracy {
+    // how an error is measured
+    private static final int ULP = 0;
+    private static final int ABS = 1;
+    private static final int REL = 2;
+    private static final String[] KINDS = {"ulp", "abs", "rel"};
+
+    private static final int SIN = 0, COS = 1, TAN = 2, ATAN = 3, ATAN2 = 4,
+            ASIN = 5, ACOS = 6, SQRT = 7, HYPOT = 8, EXP = 9, LOG = 10;
+    private static final String[] NAMES = {"sin", "cos", "tan", "atan", "atan2",
+        "asin", "acos", "sqrt", "hypot", "exp", "log"};
+    // the documented bounds: ACCURATE in ulp, then FAST
+    private static final double[] ACCURATE_ULP = {1, 1, 1, 1, 2, 2, 2, 0, 2, 2, 2};
+    private static final int[] FAST_KIND = {ABS, ABS, REL, ABS, ABS, ABS, ABS, REL, REL, REL, ABS};
+    private static final double[] FAST_BOUND = {1e-6, 1e-6, 1e-6, 1e-7, 1e-7,
+        1e-6, 1e-6, 1e-6, 1e-6, 1e-6, 1e-6};
+    private static final double[] SPECIALS = {0.0, -0.0, 1.0, -1.0, 0.5, -0.5,
+        Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+        2.2250738585072014E-308, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+        Double.NaN, Math.PI, -Math.PI, Math.PI / 2, 709.78, -745.13};
+
+    private final Random random = new Random(2013);
+    private final int samples;
+    private int failures = 0;
+
+    public FastMathAccuracy(int samples) {
+        this.samples = samples;
+    }
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        FastMathAccuracy check = new FastMathAccuracy(n);
+        check.run();
+        System.exit(check.failures == 0 ? 0 : 1);
+    }
+
+    public void run() {
+        System.out.println("function  mode      worst error   bound        at");
+        for (int f = 0; f < NAMES.length; f++) {
+            check(f, FastMath.ACCURATE);
+            check(f, FastMath.FAST);
+        }
+        System.out.println(failures == 0 ? "All within bounds" : failures + " over bound");
+    }
+
+    private void check(int f, int mode) {
+        int kind = mode == FastMath.ACCURATE ? ULP : FAST_KIND[f];
+        double bound = mode == FastMath.ACCURATE ? ACCURATE_ULP[f] : FAST_BOUND[f];
+        double worst = 0;
+        double worstX = 0, worstY = 0;
+        int specialsWrong = 0;
+
+        for (int i = 0; i < SPECIALS.length; i++) {
+            for (int j = 0; j < SPECIALS.length; j++) {
+                double x = SPECIALS[i], y = SPECIALS[j];
+                double got = eval(f, mode, x, y);
+                double want = reference(f, x, y);
+                if (Double.isNaN(want) || Double.isInfinite(want) || want == 0
+                        || Double.isNaN(got)) {
+                    // must match exactly, down to the sign of zero
+                    if (Double.doubleToLongBits(got) != Double.doubleToLongBits(want)) {
+                        specialsWrong++;
+                        worstX = x;
+                        worstY = y;
+                    }
+                }
+                if (f != ATAN2 && f != HYPOT) {
+                    break; // one argument
+                }
+            }
+        }
+
+        for (int i = 0; i < samples; i++) {
+            double x = sample(f, true);
+            double y = sample(f, false);
+            double want = reference(f, x, y);
+            if (Double.isNaN(want) || Double.isInfinite(want)) {
+                continue;
+            }
+            if (f == TAN && mode == FastMath.FAST && Math.abs(StrictMath.cos(x)) <= 0.01) {
+                continue; // documented: error grows towards the poles
+            }
+            double got = eval(f, mode, x, y);
+            double err = error(kind, got, want);
+            if (err > worst || Double.isNaN(err)) {
+                worst = Double.isNaN(err) ? Double.POSITIVE_INFINITY : err;
+                worstX = x;
+                worstY = y;
+            }
+        }
+
+        boolean ok = worst <= bound && specialsWrong == 0;
+        if (!ok) failures++;
+        StringBuffer sb = new StringBuffer();
+        pad(sb, NAMES[f], 10);
+        pad(sb, mode == FastMath.FAST ? "fast" : "accurate", 10);
+        pad(sb, fmt(worst) + " " + KINDS[kind], 14);
+        pad(sb, fmt(bound), 13);
+        sb.append(worstX);
+        if (f == ATAN2 || f == HYPOT) sb.append(", ").append(worstY);
+        if (specialsWrong > 0) sb.append("  ").append(specialsWrong).append(" special values wrong");
+        if (!ok) sb.append("  OVER");
+        System.out.println(sb);
+    }
+
+    private static double eval(int f, int mode, double x, double y) {
+        switch (f) {
+            case SIN: return FastMath.sin(x, mode);
+            case COS: return FastMath.cos(x, mode);
+            case TAN: return FastMath.tan(x, mode);
+            case ATAN: return FastMath.atan(x, mode);
+            case ATAN2: return FastMath.atan2(y, x, mode);
+            case ASIN: return FastMath.asin(x, mode);
+            case ACOS: return FastMath.acos(x, mode);
+            case SQRT: return FastMath.sqrt(x, mode);
+            case HYPOT: return FastMath.hypot(x, y, mode);
+            case EXP: return FastMath.exp(x, mode);
+            default: return FastMath.log(x, mode);
+        }
+    }
+
+    private static double reference(int f, double x, double y) {
+        switch (f) {
+            case SIN: return StrictMath.sin(x);
+            case COS: return StrictMath.cos(x);
+            case TAN: return StrictMath.tan(x);
+            case ATAN: return StrictMath.atan(x);
+            case ATAN2: return StrictMath.atan2(y, x);
+            case ASIN: return StrictMath.asin(x);
+            case ACOS: return StrictMath.acos(x);
+            case SQRT: return StrictMath.sqrt(x);
+            case HYPOT: return StrictMath.hypot(x, y);
+            case EXP: return StrictMath.exp(x);
+            default: return StrictMath.log(x);
+        }
+    }
+
+    /**
+     * A random argument from the function's domain.
+     */
+    private double sample(int f, boolean first) {
+        switch (f) {
+            case SIN:
+            case COS:
+            case TAN:
+                // mostly the range that matters, some out to the fast limit
+                // and a few beyond it
+                int r = random.nextInt(10);
+                if (r < 6) return (random.nextDouble() * 2 - 1) * 10;
+                if (r < 9) return signed(logUniform(-20, 20));
+                return signed(logUniform(20, 1000));
+            case ASIN:
+            case ACOS:
+                if (random.nextBoolean()) return random.nextDouble() * 2 - 1;
+                // crowd the ends, where sqrt(1 - x^2) is small
+                return signed(1 - logUniform(-53, 0));
+            case EXP:
+                return EXP_RANGE_MIN + random.nextDouble() * (EXP_RANGE_MAX - EXP_RANGE_MIN);
+            case SQRT:
+            case LOG:
+                return logUniform(-1074, 1024);
+            case HYPOT:
+                return signed(logUniform(-1074, 1024));
+            case ATAN2:
+                return signed(logUniform(-100, 100));
+            default:
+                return signed(logUniform(-1074, 1024));
+        }
+    }
+    
+    private static final double EXP_RANGE_MIN = -745.0;
+    private static final double EXP_RANGE_MAX = 709.7;
+
+    /**
+     * 2^e with e uniform in [lo, hi), mantissa random.
+     */
+    private double logUniform(int lo, int hi) {
+        double e = lo + random.nextDouble() * (hi - lo);
+        double v = Math.pow(2, e);
+        return v == 0 ? Double.MIN_VALUE : Math.min(v, Double.MAX_VALUE);
+    }
+
+    private double signed(double v) {
+        return random.nextBoolean() ? v : -v;
+    }
+
+    private static double error(int kind, double got, double want) {
+        double d = Math.abs(got - want);
+        if (got == want) return 0;
+        switch (kind) {
+            case ULP: return d / Math.ulp(want);
+            case ABS: return d;
+            // subnormal results only have so many bits, so they are
+            // measured against the smallest normal instead
+            default: return d / Math.max(Math.abs(want), Double.MIN_NORMAL);
+        }
+    }
+
+    private static String fmt(double v) {
+        if (v == 0) return "0";
+        if (v >= 0.01 && v < 1000) return String.valueOf(Math.round(v * 100) / 100.0);
+        return String.format("%.2e", v);
+    }
+
+    private static void pad(StringBuffer sb, String s, int width) {
+        sb.append(s);
+        for (int i = s.length(); i < width; i++) sb.append(' ');
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.sim;
+
+import java.io.IOException;
+import org.oastem.frc.ascent.roborealm.RealmFrameListener;
+import org.oastem.frc.ascent.roborealm.RealmLoopback;
+import org.oastem.frc.ascent.roborealm.RealmRequestPipeline;
+import org.oastem.frc.ascent.roborealm.RealmServer;
+import org.oastem.frc.ascent.roborealm.RealmVariableParser;
+
+/**
+ * Runs {@link RealmRequestPipeline} against a {@link RealmLoopback} that
+ * answers slower than the pipeline's timeout, then speeds up, so replies
+ * to requests the pipeline gave up on arrive after it has sent new ones.
+ * Every reply the pipeline matches must be to the request it says, going
+ * by the loopback's SEQ variable. Runs in real time over a local socket.
+ * Exits non-zero on a mismatch.
+ * <p>
+ * Usage: RealmPipelineCheck [port]
+ * </p>
+ */
+public class RealmPipelineCheck {
+    private static final int TIMEOUT = 100; // ms
+    private static final int SLOW = 300; // ms, answers after the timeout
+    private static final int FAST = 5; // ms
+
+    private final RealmVariableParser parser = new RealmVariableParser();
+    private final double[] slots = new double[1];
+    private RealmRequestPipeline pipeline;
+    private int matched = 0;
+    private int mismatched = 0;
+
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 16060;
+        RealmPipelineCheck check = new RealmPipelineCheck();
+        boolean ok = check.run(port);
+        System.exit(ok ? 0 : 1);
+    }
+
+    public boolean run(int port) throws IOException, InterruptedException {
+        parser.addVariable("SEQ");
+
+        RealmLoopback loopback = new RealmLoopback(port, SLOW);
+        loopback.start();
+        RealmServer server = RealmServer.getInstance();
+        server.setPort(port);
+        server.connect();
+
+        pipeline = new RealmRequestPipeline(server, new String[]{"SEQ"}, 2, 20);
+        pipeline.setTimeout(TIMEOUT);
+        server.attachFrameListener(pipeline);
+        pipeline.setListener(new RealmFrameListener() {
+            public void frameReceived(byte[] buf, int off, int len) {
+                check(buf, off, len);
+            }
+        });
+        Thread t = new Thread(pipeline);
+        t.start();
+
+        // the first requests time out, then the loopback catches up
+        Thread.sleep(TIMEOUT + 50);
+        loopback.setDelay(FAST);
+        Thread.sleep(1000);
+        pipeline.stop();
+        t.join();
+        loopback.stop();
+
+        System.out.println("sent " + pipeline.getSent() + ", timed out "
+                + pipeline.getTimeouts() + ", late " + pipeline.getLate()
+                + ", matched " + matched + ", mismatched " + mismatched);
+        boolean ok = mismatched == 0 && pipeline.getLate() > 0 && matched > 0;
+        System.out.println(ok ? "Replies matched to their requests" : "FAILED");
+        return ok;
+    }
+
+    private synchronized void check(byte[] buf, int off, int len) {
+        if ((parser.parse(buf, off, len, slots) & 1) == 0) {
+            mismatched++;
+            return;
+        }
+        int seq = (int) slots[0];
+        if (seq == pipeline.getReplySequence()) {
+            matched++;
+        } else {
+            mismatched++;
+            System.out.println("reply to request " + seq + " matched to "
+                    + pipeline.getReplySequence());
+        }
+    }
+}
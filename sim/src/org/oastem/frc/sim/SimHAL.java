@@ -0,0 +1,159 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.sim;
+
+/**
+ * In-memory state behind the simulator's WPILib stand-ins. Robot code
+ * writes PWM outputs here and reads joysticks, digital inputs and gyros
+ * from here; a test or the {@link SimMain} driver script sets the inputs
+ * and inspects the outputs.
+ * <p>
+ * Arrays are indexed by the same channel/port numbers the robot uses.
+ * </p>
+ */
+public class SimHAL {
+    public static final int PWM_CHANNELS = 11;
+    public static final int DIO_CHANNELS = 15;
+    public static final int ANALOG_CHANNELS = 9;
+    public static final int JOYSTICKS = 5;
+    public static final int AXES = 7;
+    public static final int BUTTONS = 13;
+    
+    private static final double[] pwm = new double[PWM_CHANNELS + 1];
+    private static final long[] pwmWrites = new long[PWM_CHANNELS + 1];
+    private static final boolean[] dio = new boolean[DIO_CHANNELS + 1];
+    private static final double[] gyro = new double[ANALOG_CHANNELS + 1];
+    private static final double[][] axes = new double[JOYSTICKS][AXES];
+    private static final boolean[][] buttons = new boolean[JOYSTICKS][BUTTONS];
+    
+    private static volatile boolean enabled = false;
+    private static volatile boolean autonomous = false;
+    private static volatile boolean test = false;
+    private static volatile boolean running = true;
+
+    static {
+        reset();
+    }
+
+    private SimHAL() {
+    }
+
+    /**
+     * Puts every input and output back to power-on state. Digital inputs
+     * read true (open, pulled up), like the real board.
+     */
+    public static synchronized void reset() {
+        for (int i = 0; i < pwm.length; i++) {
+            pwm[i] = 0.0;
+            pwmWrites[i] = 0;
+        }
+        for (int i = 0; i < dio.length; i++) {
+            dio[i] = true;
+        }
+        for (int i = 0; i < gyro.length; i++) {
+            gyro[i] = 0.0;
+        }
+        for (int j = 0; j < JOYSTICKS; j++) {
+            for (int a = 0; a < AXES; a++) axes[j][a] = 0.0;
+            for (int b = 0; b < BUTTONS; b++) buttons[j][b] = false;
+        }
+        enabled = false;
+        autonomous = false;
+        test = false;
+        running = true;
+    }
+
+    public static synchronized void setPwm(int channel, double value) {
+        pwm[channel] = value;
+        pwmWrites[channel]++;
+    }
+
+    public static synchronized double getPwm(int channel) {
+        return pwm[channel];
+    }
+
+    /**
+     * @return How many times the channel has been written.
+     */
+    public static synchronized long getPwmWrites(int channel) {
+        return pwmWrites[channel];
+    }
+
+    public static synchronized void setDigital(int channel, boolean value) {
+        dio[channel] = value;
+    }
+
+    public static synchronized boolean getDigital(int channel) {
+        return dio[channel];
+    }
+
+    public static synchronized void setGyro(int channel, double degrees) {
+        gyro[channel] = degrees;
+    }
+
+    public static synchronized double getGyro(int channel) {
+        return gyro[channel];
+    }
+
+    /**
+     * @param port Joystick port, 1-4.
+     * @param axis Axis number, 1-6.
+     */
+    public static synchronized void setAxis(int port, int axis, double value) {
+        axes[port][axis] = value;
+    }
+
+    public static synchronized double getAxis(int port, int axis) {
+        return axis < AXES ? axes[port][axis] : 0.0;
+    }
+
+    /**
+     * @param port Joystick port, 1-4.
+     * @param button Button number, 1-12.
+     */
+    public static synchronized void setButton(int port, int button, boolean value) {
+        buttons[port][button] = value;
+    }
+
+    public static synchronized boolean getButton(int port, int button) {
+        return button < BUTTONS && buttons[port][button];
+    }
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setAutonomous(boolean value) {
+        autonomous = value;
+    }
+
+    public static boolean isAutonomous() {
+        return autonomous;
+    }
+
+    public static void setTest(boolean value) {
+        test = value;
+    }
+
+    public static boolean isTest() {
+        return test;
+    }
+
+    /**
+     * Makes SimpleRobot.startCompetition() return once the current mode
+     * method does.
+     */
+    public static void shutdown() {
+        running = false;
+    }
+
+    public static boolean isRunning() {
+        return running;
+    }
+}
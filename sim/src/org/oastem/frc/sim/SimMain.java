@@ -0,0 +1,227 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.sim;
+
+import edu.wpi.first.wpilibj.DriverStationLCD;
+import java.io.File;
+import org.oastem.frc.ascent.RobotMain;
+import org.oastem.frc.control.DriveSystem;
+import org.oastem.frc.metrics.Metrics;
+import org.oastem.frc.telemetry.MappedTelemetrySink;
+import org.oastem.frc.time.Clock;
+import org.oastem.frc.time.RealClock;
+import org.oastem.frc.time.VirtualClock;
+
+/**
+ * Runs RobotMain on the desktop against the in-memory HAL. The robot runs
+ * its normal SimpleRobot mode loop on its own thread while this class
+ * plays the Driver Station (disabled, autonomous, teleop) and a scripted
+ * driver, and closes the loop with a crude plant: the feed arm moves the
+ * fire limit switch and the drive outputs turn the gyro.
+ * <p>
+ * By default the match runs on a {@link VirtualClock}, so it takes only as
+ * long as the CPU needs and comes out the same every time; -realtime runs
+ * it against the wall clock instead.
+ * </p>
+ * <p>
+ * With -telemetry, the robot's telemetry is recorded to that file through
+ * a {@link MappedTelemetrySink}, and the recorder is closed once the robot
+ * has stopped; {@link TelemetryCheck} reads it back.
+ * </p>
+ * <p>
+ * Usage: SimMain [-realtime] [-telemetry file] [autonomous seconds] [teleop seconds]
+ * </p>
+ */
+public class SimMain {
+    private static final int STEP = 5; // ms
+    // longest the robot gets to stop after the match
+    private static final int WIND_DOWN = 2000; // ms
+    private static final int DRIVER = 1;
+    private static final int GYRO = 1;
+    private static final int FIRE_LIM = 1;
+    // buttons on the left stick, see RobotMain
+    private static final int FIRE_BUTTON = 1;
+    private static final int SHOOTER_ON_BUTTON = 4;
+    private static final int SHOOTER_OFF_BUTTON = 5;
+    // arm travel per second at full power, 0 = released, 1 = parked
+    private static final double ARM_RATE = 4.0;
+    private static final double TURN_RATE = 180.0; // degrees/s
+    
+    private double arm = 1.0;
+    private double heading = 0.0;
+    private long shots = 0;
+    private final long autoMs;
+    private final long teleopMs;
+    private final Clock clock;
+    private File telemetryFile;
+    private MappedTelemetrySink telemetrySink;
+
+    public SimMain(long autoMs, long teleopMs, Clock clock) {
+        this.autoMs = autoMs;
+        this.teleopMs = teleopMs;
+        this.clock = clock;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int a = 0;
+        Clock clock = new VirtualClock();
+        File telemetry = null;
+        while (args.length > a && args[a].startsWith("-")) {
+            if (args[a].equals("-realtime")) {
+                clock = new RealClock();
+            } else if (args[a].equals("-telemetry") && args.length > a + 1) {
+                telemetry = new File(args[++a]);
+            } else {
+                System.err.println("Usage: SimMain [-realtime] [-telemetry file]"
+                        + " [autonomous seconds] [teleop seconds]");
+                System.exit(2);
+            }
+            a++;
+        }
+        long auto = args.length > a ? Long.parseLong(args[a]) * 1000 : 15000;
+        long teleop = args.length > a + 1 ? Long.parseLong(args[a + 1]) * 1000 : 135000;
+        SimMain sim = new SimMain(auto, teleop, clock);
+        sim.setTelemetryFile(telemetry);
+        sim.run();
+        // the robot leaves its logging and vision threads running
+        System.exit(0);
+    }
+
+    /**
+     * @param file Where to record the robot's telemetry, or null not to.
+     */
+    public void setTelemetryFile(File file) {
+        telemetryFile = file;
+    }
+
+    public void run() throws InterruptedException {
+        SimHAL.reset();
+        // before the robot exists, so everything it builds uses this clock
+        Clock.setInstance(clock);
+        if (clock instanceof VirtualClock) {
+            ((VirtualClock) clock).enter();
+        }
+        final RobotMain robot = new RobotMain();
+        if (telemetryFile != null) {
+            telemetrySink = new MappedTelemetrySink(telemetryFile);
+            robot.getTelemetry().setSink(telemetrySink);
+        }
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                robot.startCompetition();
+            }
+        }, "robot");
+        t.setDaemon(true);
+        t.start();
+        if (clock instanceof VirtualClock) {
+            ((VirtualClock) clock).enter(t);
+        }
+
+        long begin = System.currentTimeMillis();
+        long start = clock.millis();
+        phase(false, false, 1000);
+        phase(true, true, autoMs);
+        phase(false, false, 1000);
+        phase(true, false, teleopMs);
+        SimHAL.setEnabled(false);
+        SimHAL.shutdown();
+        // let the robot wind down; sleeping on the clock rather than
+        // joining keeps a VirtualClock in step with it, so the report is
+        // taken at the same point every run
+        for (long w = 0; t.isAlive() && w < WIND_DOWN; w += STEP) {
+            clock.sleep(STEP);
+        }
+        long took = System.currentTimeMillis() - begin;
+        // only the robot thread records, so only close once it is done
+        if (!t.isAlive()) {
+            robot.getTelemetry().close();
+        }
+
+        report(robot, clock.millis() - start, took);
+    }
+
+    private void phase(boolean enabled, boolean autonomous, long ms) throws InterruptedException {
+        SimHAL.setAutonomous(autonomous);
+        SimHAL.setEnabled(enabled);
+        for (long t = 0; t < ms; t += STEP) {
+            if (enabled && !autonomous) {
+                drive(t);
+            }
+            plant();
+            clock.sleep(STEP);
+        }
+        for (int b = 1; b < SimHAL.BUTTONS; b++) {
+            SimHAL.setButton(DRIVER, b, false);
+        }
+    }
+
+    /**
+     * The scripted driver: weaves forward, spins the shooter up after a
+     * second and fires every five seconds.
+     */
+    private void drive(long t) {
+        double s = t / 1000.0;
+        SimHAL.setAxis(DRIVER, 2, -0.6);
+        SimHAL.setAxis(DRIVER, 1, 0.4 * Math.sin(s * 0.5));
+        SimHAL.setAxis(DRIVER, 3, -1.0);
+        SimHAL.setButton(DRIVER, SHOOTER_ON_BUTTON, t >= 1000 && t < 1100);
+        SimHAL.setButton(DRIVER, SHOOTER_OFF_BUTTON, t >= teleopMs - 500);
+        boolean fire = t >= 2000 && t % 5000 < 100;
+        if (fire && !SimHAL.getButton(DRIVER, FIRE_BUTTON)) {
+            shots++;
+        }
+        SimHAL.setButton(DRIVER, FIRE_BUTTON, fire);
+    }
+
+    private void plant() {
+        double dt = STEP / 1000.0;
+        arm += SimHAL.getPwm(RobotMain.FEED_ARM) * ARM_RATE * dt;
+        if (arm > 1.0) arm = 1.0;
+        if (arm < 0.0) arm = 0.0;
+        // the switch opens once the arm is all the way back
+        SimHAL.setDigital(FIRE_LIM, arm < 1.0);
+        
+        // the right side is inverted, so the sum is the turn
+        double turn = SimHAL.getPwm(RobotMain.LEFT_DRIVE) + SimHAL.getPwm(RobotMain.RIGHT_DRIVE);
+        heading += turn * TURN_RATE * dt;
+        SimHAL.setGyro(GYRO, heading);
+    }
+
+    private void report(RobotMain robot, long simulated, long took) {
+        System.out.println("Simulated " + simulated + " ms in " + took + " ms");
+        System.out.println("Fire presses: " + shots);
+        System.out.println("Heading: " + heading);
+        for (int i = 1; i <= SimHAL.PWM_CHANNELS; i++) {
+            long w = SimHAL.getPwmWrites(i);
+            if (w > 0) {
+                System.out.println("PWM " + i + ": " + SimHAL.getPwm(i) + " (" + w + " writes)");
+            }
+        }
+        DriveSystem drive = DriveSystem.getInstance();
+        for (int c = 0; c < DriveSystem.CHANNELS; c++) {
+            long issued = drive.getIssued(c);
+            long suppressed = drive.getSuppressed(c);
+            if (issued + suppressed > 0) {
+                String name = c == DriveSystem.DRIVE ? "drive"
+                        : c == DriveSystem.SECONDARY_DRIVE ? "drive 2" : "victor " + c;
+                System.out.println("DriveSystem " + name + ": " + issued + " issued, "
+                        + suppressed + " suppressed");
+            }
+        }
+        System.out.println("DriveSystem handoffs: " + drive.getHandoffs()
+                + ", failures: " + drive.getFailures());
+        System.out.println("Telemetry rows: " + robot.getTelemetry().getCommitted());
+        if (telemetrySink != null) {
+            System.out.println("Telemetry file: " + telemetryFile + ", "
+                    + telemetrySink.getRows() + " rows"
+                    + (telemetrySink.getFailure() != null ? ", failed: " + telemetrySink.getFailure() : ""));
+        }
+        DriverStationLCD lcd = DriverStationLCD.getInstance();
+        for (int i = 0; i < DriverStationLCD.kNumLines; i++) {
+            System.out.println("|" + lcd.getText(i) + "|");
+        }
+        Metrics.dump(System.out);
+    }
+}
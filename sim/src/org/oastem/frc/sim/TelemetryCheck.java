@@ -0,0 +1,143 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import org.oastem.frc.telemetry.MatchLogReader;
+import org.oastem.frc.telemetry.MatchLogTool;
+import org.oastem.frc.telemetry.TelemetryDecoder;
+
+/**
+ * Reads back the telemetry file a {@link SimMain} run recorded. It decodes
+ * the file to CSV with {@link TelemetryDecoder} and checks that every row
+ * has every channel and that time only moves forward. It then converts
+ * the file to a match log with {@link MatchLogTool#convert(File, File)}
+ * and checks that the log holds the same rows and at least one shot.
+ * Exits non-zero if anything is off.
+ * <p>
+ * Usage: TelemetryCheck &lt;in.tlm&gt; [minimum rows]
+ * </p>
+ */
+public class TelemetryCheck {
+    private static final String SHOT = "ev_fire";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: TelemetryCheck <in.tlm> [minimum rows]");
+            System.exit(2);
+        }
+        long min = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        boolean ok = check(new File(args[0]), min);
+        System.exit(ok ? 0 : 1);
+    }
+
+    public static boolean check(File tlm, long min) throws IOException {
+        RowChecker rows = new RowChecker();
+        long decoded = TelemetryDecoder.decode(tlm, rows);
+        rows.close();
+
+        File mlg = File.createTempFile("telemetry", ".mlg");
+        long shots;
+        long logged;
+        try {
+            MatchLogTool.convert(tlm, mlg);
+            MatchLogReader reader = new MatchLogReader(mlg);
+            try {
+                logged = reader.getRowCount();
+                int shot = reader.indexOf(SHOT);
+                shots = shot < 0 ? 0 : reader.getEvents(shot).length;
+            } finally {
+                reader.close();
+            }
+        } finally {
+            mlg.delete();
+        }
+
+        System.out.println(tlm + ": " + decoded + " rows of " + rows.columns
+                + " columns, " + rows.bad + " bad; match log " + logged
+                + " rows, " + shots + " shots");
+        boolean ok = decoded >= min && rows.bad == 0 && rows.lines == decoded
+                && logged == decoded && shots > 0;
+        System.out.println(ok ? "Telemetry decoded" : "FAILED");
+        return ok;
+    }
+
+    /**
+     * Takes the decoder's CSV a line at a time: the header sets the
+     * number of columns, and each row must have that many, all numbers,
+     * with a later time than the row before.
+     */
+    private static class RowChecker extends Writer {
+        private final StringBuffer line = new StringBuffer(256);
+        private int columns = -1;
+        private long lines = 0;
+        private long bad = 0;
+        private long lastTime = Long.MIN_VALUE;
+
+        public void write(char[] buf, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                if (buf[i] == '\n') {
+                    endLine(line.toString());
+                    line.setLength(0);
+                } else {
+                    line.append(buf[i]);
+                }
+            }
+        }
+
+        private void endLine(String text) {
+            String[] cells = split(text);
+            if (columns < 0) {
+                columns = cells.length;
+                return;
+            }
+            lines++;
+            if (cells.length != columns) {
+                bad++;
+                return;
+            }
+            try {
+                long time = Long.parseLong(cells[0]);
+                for (int c = 1; c < cells.length; c++) {
+                    Double.parseDouble(cells[c]);
+                }
+                if (time <= lastTime) {
+                    bad++;
+                }
+                lastTime = time;
+            } catch (NumberFormatException e) {
+                bad++;
+            }
+        }
+
+        private static String[] split(String text) {
+            int n = 1;
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) == ',') n++;
+            }
+            String[] cells = new String[n];
+            int from = 0;
+            for (int c = 0; c < n; c++) {
+                int to = text.indexOf(',', from);
+                if (to < 0) to = text.length();
+                cells[c] = text.substring(from, to);
+                from = to + 1;
+            }
+            return cells;
+        }
+
+        public void flush() {
+        }
+
+        public void close() {
+            if (line.length() > 0) {
+                endLine(line.toString());
+                line.setLength(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Desktop/simulator only. Spills telemetry rows into a memory-mapped file,
+ * so recording at hundreds of Hz is just memory writes and the OS does the
+ * disk I/O in the background.
+ * <p>
+ * File layout (big-endian): a header of magic {@code OTLM}, format
+ * version, channel count, offset of the first row, row count (long), and
+ * the channel names as length-prefixed UTF-8. Rows follow at the data
+ * offset, each an FPGA time in microseconds (long) and one double per
+ * channel. {@link TelemetryDecoder} turns the file into CSV.
+ * </p>
+ */
+public class MappedTelemetrySink implements TelemetrySink {
+    public static final int MAGIC = 0x4F544C4D; // "OTLM"
+    public static final int VERSION = 1;
+    static final int ROWS_OFFSET = 16;
+    private static final int HEADER_SIZE = 4096;
+    private static final int REGION_SIZE = 8 * 1024 * 1024;
+    
+    private final File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private MappedByteBuffer header;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private int rowSize;
+    private long rows = 0;
+    private IOException failure;
+
+    public MappedTelemetrySink(File file) {
+        this.file = file;
+    }
+
+    public void begin(String[] channels, int count) {
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            raf.setLength(0);
+            channel = raf.getChannel();
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(count);
+            header.putInt(HEADER_SIZE);
+            header.putLong(0);
+            for (int i = 0; i < count; i++) {
+                byte[] name = channels[i].getBytes("UTF-8");
+                header.putShort((short) name.length);
+                header.put(name);
+            }
+            rowSize = 8 + 8 * count;
+            regionStart = HEADER_SIZE;
+            mapRegion();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void mapRegion() throws IOException {
+        int size = (REGION_SIZE / rowSize) * rowSize;
+        region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, size);
+    }
+
+    public void write(long time, double[] row, int count) {
+        if (region == null) {
+            return;
+        }
+        if (region.remaining() < rowSize) {
+            regionStart += region.position();
+            try {
+                mapRegion();
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+        }
+        region.putLong(time);
+        for (int i = 0; i < count; i++) {
+            region.putDouble(row[i]);
+        }
+        rows++;
+        header.putLong(ROWS_OFFSET, rows);
+    }
+
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            if (region != null) region.force();
+            header.force();
+            raf.setLength(HEADER_SIZE + rows * rowSize);
+        } catch (IOException e) {
+            // the row count in the header is still right, just a longer file
+        }
+        try {
+            raf.close();
+        } catch (IOException e) {
+            
+        }
+        region = null;
+        channel = null;
+    }
+
+    private void fail(IOException e) {
+        failure = e;
+        region = null;
+        e.printStackTrace();
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return Why recording stopped, or null if it didn't.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.telemetry;
+
+/**
+ * Constants and varint helpers shared by {@link MatchLogWriter} and
+ * {@link MatchLogReader}.
+ * <p>
+ * A match log (big-endian) is a header, a run of blocks, an index and a
+ * footer:
+ * </p>
+ * <pre>
+ * header: int magic "OMLG", int version, int channels, UTF name * channels,
+ *         int rows per block
+ * block:  int rows, then the time column and one column per channel, each
+ *         as int byte length + bytes
+ *         time column: long first time, then zigzag varint
+ *                      delta-of-delta for every later row
+ *         value column: unsigned varint of (bits XOR previous bits), with
+ *                       previous bits starting at 0 in every block
+ * index:  int blocks, (long first time, long last time, long offset,
+ *         int rows) * blocks, int events, (long time, int channel) * events
+ * footer: long index offset, int magic
+ * </pre>
+ * <p>
+ * Every block decodes on its own, and a column can be skipped by its
+ * length without decoding it, so a query only touches the blocks in its
+ * time window and the channels it asked for.
+ * </p>
+ */
+final class MatchLogFormat {
+    static final int MAGIC = 0x4F4D4C47; // "OMLG"
+    static final int VERSION = 1;
+    static final int FOOTER_SIZE = 12;
+
+    private MatchLogFormat() {
+    }
+
+    static int putVarint(byte[] buf, int pos, long v) {
+        while ((v & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+        return pos;
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.telemetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a match log written by {@link MatchLogWriter}. Time windows are
+ * found through the block index, and only the requested channels are
+ * decoded.
+ */
+public class MatchLogReader {
+
+    /**
+     * Gets the rows of a query, one at a time.
+     */
+    public interface RowVisitor {
+        /**
+         * @param time The row's time in microseconds.
+         * @param values The requested channels, in the order asked for.
+         */
+        public void row(long time, double[] values);
+    }
+    
+    private final RandomAccessFile raf;
+    private final FileChannel ch;
+    private final String[] names;
+    private final int blockRows;
+    
+    private final long[] blockFirst;
+    private final long[] blockLast;
+    private final long[] blockOffset;
+    private final int[] blockCount;
+    private final long[] eventTimes;
+    private final int[] eventChannels;
+    
+    private ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+    private long[] times;
+    private double[] column;
+
+    public MatchLogReader(File file) throws IOException {
+        raf = new RandomAccessFile(file, "r");
+        ch = raf.getChannel();
+        
+        raf.seek(0);
+        if (raf.readInt() != MatchLogFormat.MAGIC) {
+            throw new IOException(file + " is not a match log");
+        }
+        int version = raf.readInt();
+        if (version != MatchLogFormat.VERSION) {
+            throw new IOException("Unsupported match log version " + version);
+        }
+        names = new String[raf.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = raf.readUTF();
+        }
+        blockRows = raf.readInt();
+        times = new long[blockRows];
+        column = new double[blockRows];
+        
+        long size = ch.size();
+        raf.seek(size - MatchLogFormat.FOOTER_SIZE);
+        long indexOffset = raf.readLong();
+        if (raf.readInt() != MatchLogFormat.MAGIC) {
+            throw new IOException(file + " has no index; was it closed?");
+        }
+        
+        ByteBuffer index = ByteBuffer.allocate((int) (size - MatchLogFormat.FOOTER_SIZE - indexOffset));
+        ch.read(index, indexOffset);
+        index.flip();
+        int blocks = index.getInt();
+        blockFirst = new long[blocks];
+        blockLast = new long[blocks];
+        blockOffset = new long[blocks];
+        blockCount = new int[blocks];
+        for (int b = 0; b < blocks; b++) {
+            blockFirst[b] = index.getLong();
+            blockLast[b] = index.getLong();
+            blockOffset[b] = index.getLong();
+            blockCount[b] = index.getInt();
+        }
+        int events = index.getInt();
+        eventTimes = new long[events];
+        eventChannels = new int[events];
+        for (int e = 0; e < events; e++) {
+            eventTimes[e] = index.getLong();
+            eventChannels[e] = index.getInt();
+        }
+    }
+
+    public String[] getChannels() {
+        return (String[]) names.clone();
+    }
+
+    /**
+     * @return The channel's index, or -1 if there is no such channel.
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    public long getRowCount() {
+        long n = 0;
+        for (int b = 0; b < blockCount.length; b++) {
+            n += blockCount[b];
+        }
+        return n;
+    }
+
+    public int getBlockCount() {
+        return blockCount.length;
+    }
+
+    public long getStartTime() {
+        return blockFirst.length == 0 ? 0 : blockFirst[0];
+    }
+
+    public long getEndTime() {
+        return blockLast.length == 0 ? 0 : blockLast[blockLast.length - 1];
+    }
+
+    public int getEventCount() {
+        return eventTimes.length;
+    }
+
+    /**
+     * @return The times at which an event channel fired.
+     */
+    public long[] getEvents(int channel) {
+        int n = 0;
+        for (int e = 0; e < eventChannels.length; e++) {
+            if (eventChannels[e] == channel) n++;
+        }
+        long[] t = new long[n];
+        n = 0;
+        for (int e = 0; e < eventChannels.length; e++) {
+            if (eventChannels[e] == channel) t[n++] = eventTimes[e];
+        }
+        return t;
+    }
+
+    /**
+     * Visits every row with {@code from <= time <= to}.
+     *
+     * @param channels The channel indices to decode.
+     * @return How many rows were visited.
+     */
+    public long query(long from, long to, int[] channels, RowVisitor visitor)
+            throws IOException {
+        double[][] cols = new double[channels.length][blockRows];
+        double[] row = new double[channels.length];
+        long visited = 0;
+        
+        // first block that can hold 'from'
+        int lo = 0;
+        int hi = blockLast.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (blockLast[mid] < from) lo = mid + 1;
+            else hi = mid;
+        }
+        
+        for (int b = lo; b < blockFirst.length && blockFirst[b] <= to; b++) {
+            int rows = readBlock(b, channels, cols);
+            for (int r = 0; r < rows; r++) {
+                long t = times[r];
+                if (t < from) continue;
+                if (t > to) break;
+                for (int c = 0; c < channels.length; c++) {
+                    row[c] = cols[c][r];
+                }
+                visitor.row(t, row);
+                visited++;
+            }
+        }
+        return visited;
+    }
+
+    private int readBlock(int b, int[] channels, double[][] cols) throws IOException {
+        long end = b + 1 < blockOffset.length ? blockOffset[b + 1]
+                : ch.size() - MatchLogFormat.FOOTER_SIZE;
+        int len = (int) (end - blockOffset[b]);
+        if (buf.capacity() < len) {
+            buf = ByteBuffer.allocate(len);
+        }
+        buf.clear();
+        buf.limit(len);
+        while (buf.hasRemaining()) {
+            if (ch.read(buf, blockOffset[b] + buf.position()) < 0) {
+                throw new IOException("Truncated block " + b);
+            }
+        }
+        buf.flip();
+        
+        int rows = buf.getInt();
+        int timeLen = buf.getInt();
+        int timeEnd = buf.position() + timeLen;
+        long t = buf.getLong();
+        long delta = 0;
+        times[0] = t;
+        for (int r = 1; r < rows; r++) {
+            delta += MatchLogFormat.unzigzag(getVarint(buf));
+            t += delta;
+            times[r] = t;
+        }
+        buf.position(timeEnd);
+        
+        // columns are in channel order; decode the wanted ones, skip the rest
+        for (int c = 0; c < names.length; c++) {
+            int colLen = buf.getInt();
+            int colEnd = buf.position() + colLen;
+            for (int k = 0; k < channels.length; k++) {
+                if (channels[k] == c) {
+                    decodeColumn(buf, rows, cols[k]);
+                    buf.position(colEnd - colLen); // another k may want it too
+                }
+            }
+            buf.position(colEnd);
+        }
+        return rows;
+    }
+
+    private static void decodeColumn(ByteBuffer buf, int rows, double[] out) {
+        long bits = 0;
+        for (int r = 0; r < rows; r++) {
+            bits ^= getVarint(buf);
+            out[r] = Double.longBitsToDouble(bits);
+        }
+    }
+
+    private static long getVarint(ByteBuffer buf) {
+        long v = 0;
+        int shift = 0;
+        while (true) {
+            byte b = buf.get();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+            shift += 7;
+        }
+    }
+
+    public void close() throws IOException {
+        raf.close();
+    }
+}
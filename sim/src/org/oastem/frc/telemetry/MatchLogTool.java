@@ -0,0 +1,219 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.telemetry;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Command line tool for match logs.
+ * <pre>
+ * convert &lt;in.tlm&gt; &lt;out.mlg&gt;     telemetry file to match log
+ * info &lt;log&gt;                      channels, rows, duration, events
+ * query &lt;log&gt; &lt;from s&gt; &lt;to s&gt; &lt;ch,ch,...&gt;
+ *                                 rows in a time window, as CSV
+ * around &lt;log&gt; &lt;event&gt; &lt;before s&gt; &lt;after s&gt; &lt;ch,ch,...&gt;
+ *                                 rows around every occurrence of an event
+ * </pre>
+ * Times are seconds from the start of the log. Example: shooter speed and
+ * the fire limit switch in the 2 s before each shot is
+ * {@code around match.mlg fire 2 0 shooter_speed,fire_lim}.
+ */
+public class MatchLogTool {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            usage();
+        }
+        String cmd = args[0];
+        if (cmd.equals("convert") && args.length == 3) {
+            long rows = convert(new File(args[1]), new File(args[2]));
+            System.err.println("Wrote " + rows + " rows to " + args[2]);
+            return;
+        }
+        
+        MatchLogReader log = new MatchLogReader(new File(args[1]));
+        final Writer out = new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16);
+        try {
+            if (cmd.equals("info")) {
+                info(log, out);
+            } else if (cmd.equals("query") && args.length == 5) {
+                long start = log.getStartTime();
+                int[] ch = channels(log, args[4]);
+                header(log, ch, out);
+                log.query(start + seconds(args[2]), start + seconds(args[3]), ch, printer(out, start));
+            } else if (cmd.equals("around") && args.length == 6) {
+                int ev = log.indexOf(TelemetryRecorder.EVENT_PREFIX + args[2]);
+                if (ev < 0) ev = log.indexOf(args[2]);
+                if (ev < 0) {
+                    throw new IllegalArgumentException("No event channel " + args[2]);
+                }
+                long before = seconds(args[3]);
+                long after = seconds(args[4]);
+                int[] ch = channels(log, args[5]);
+                long start = log.getStartTime();
+                long[] times = log.getEvents(ev);
+                out.write("event,");
+                header(log, ch, out);
+                for (int i = 0; i < times.length; i++) {
+                    final String prefix = (i + 1) + ",";
+                    final MatchLogReader.RowVisitor p = printer(out, start);
+                    log.query(times[i] - before, times[i] + after, ch,
+                            new MatchLogReader.RowVisitor() {
+                        public void row(long time, double[] values) {
+                            try {
+                                out.write(prefix);
+                            } catch (IOException e) {
+                                throw new RuntimeException(e.toString());
+                            }
+                            p.row(time, values);
+                        }
+                    });
+                }
+            } else {
+                usage();
+            }
+        } finally {
+            out.flush();
+            log.close();
+        }
+    }
+
+    private static void usage() {
+        System.err.println("usage: MatchLogTool convert <in.tlm> <out.mlg>");
+        System.err.println("       MatchLogTool info <log>");
+        System.err.println("       MatchLogTool query <log> <from s> <to s> <ch,ch,...>");
+        System.err.println("       MatchLogTool around <log> <event> <before s> <after s> <ch,ch,...>");
+        System.exit(2);
+    }
+
+    private static long seconds(String s) {
+        return (long) (Double.parseDouble(s) * 1e6);
+    }
+
+    private static int[] channels(MatchLogReader log, String list) {
+        String[] parts = list.split(",");
+        int[] ch = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            ch[i] = log.indexOf(parts[i].trim());
+            if (ch[i] < 0) {
+                throw new IllegalArgumentException("No channel " + parts[i]);
+            }
+        }
+        return ch;
+    }
+
+    private static void header(MatchLogReader log, int[] ch, Writer out) throws IOException {
+        String[] names = log.getChannels();
+        out.write("time_s");
+        for (int i = 0; i < ch.length; i++) {
+            out.write(',');
+            out.write(names[ch[i]]);
+        }
+        out.write('\n');
+    }
+
+    private static MatchLogReader.RowVisitor printer(final Writer out, final long start) {
+        final StringBuffer sb = new StringBuffer(128);
+        return new MatchLogReader.RowVisitor() {
+            public void row(long time, double[] values) {
+                sb.setLength(0);
+                sb.append((time - start) / 1e6);
+                for (int i = 0; i < values.length; i++) {
+                    sb.append(',').append(values[i]);
+                }
+                sb.append('\n');
+                try {
+                    out.write(sb.toString());
+                } catch (IOException e) {
+                    throw new RuntimeException(e.toString());
+                }
+            }
+        };
+    }
+
+    private static void info(MatchLogReader log, Writer out) throws IOException {
+        String[] names = log.getChannels();
+        out.write("rows: " + log.getRowCount() + " in " + log.getBlockCount() + " blocks\n");
+        out.write("duration: " + (log.getEndTime() - log.getStartTime()) / 1e6 + " s\n");
+        out.write("channels:\n");
+        for (int i = 0; i < names.length; i++) {
+            out.write("  " + names[i]);
+            if (names[i].startsWith(TelemetryRecorder.EVENT_PREFIX)) {
+                out.write(" (" + log.getEvents(i).length + " events)");
+            }
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Re-encodes a {@link MappedTelemetrySink} file as a match log.
+     *
+     * @return Rows converted.
+     */
+    public static long convert(File in, File outFile) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(in, "r");
+        try {
+            FileChannel ch = raf.getChannel();
+            if (raf.readInt() != MappedTelemetrySink.MAGIC) {
+                throw new IOException(in + " is not a telemetry file");
+            }
+            int version = raf.readInt();
+            if (version != MappedTelemetrySink.VERSION) {
+                throw new IOException("Unsupported telemetry version " + version);
+            }
+            int channels = raf.readInt();
+            int dataOffset = raf.readInt();
+            long rows = raf.readLong();
+            String[] names = new String[channels];
+            for (int i = 0; i < channels; i++) {
+                byte[] name = new byte[raf.readShort()];
+                raf.readFully(name);
+                names[i] = new String(name, "UTF-8");
+            }
+            
+            int rowSize = 8 + 8 * channels;
+            rows = Math.min(rows, (ch.size() - dataOffset) / rowSize);
+            MatchLogWriter w = new MatchLogWriter(outFile);
+            w.begin(names, channels);
+            
+            ByteBuffer buf = ByteBuffer.allocate(rowSize * 4096);
+            double[] row = new double[channels];
+            long pos = dataOffset;
+            long done = 0;
+            while (done < rows) {
+                buf.clear();
+                int n = (int) Math.min(4096, rows - done);
+                buf.limit(n * rowSize);
+                while (buf.hasRemaining()) {
+                    if (ch.read(buf, pos + buf.position()) < 0) break;
+                }
+                buf.flip();
+                for (int r = 0; r < n; r++) {
+                    long t = buf.getLong();
+                    for (int c = 0; c < channels; c++) {
+                        row[c] = buf.getDouble();
+                    }
+                    w.write(t, row, channels);
+                }
+                pos += (long) n * rowSize;
+                done += n;
+            }
+            w.close();
+            if (w.getFailure() != null) {
+                throw w.getFailure();
+            }
+            return done;
+        } finally {
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.telemetry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Writes the indexed, column-compressed match log described in
+ * {@link MatchLogFormat}. Rows are buffered a block at a time and encoded
+ * when the block fills. Event channels (see
+ * {@link TelemetryRecorder#EVENT_PREFIX}) also go into the event index.
+ * <p>
+ * It can be attached straight to a {@link TelemetryRecorder} as its sink,
+ * or fed from a telemetry file with {@code MatchLogTool convert}.
+ * </p>
+ */
+public class MatchLogWriter implements TelemetrySink {
+    public static final int DEFAULT_BLOCK_ROWS = 1024;
+    
+    private final File file;
+    private final int blockRows;
+    private DataOutputStream out;
+    private long offset;
+    
+    private int channels;
+    private boolean[] isEvent;
+    private long[] times;
+    private double[] values; // column-major within the block
+    private int rows = 0;
+    private byte[] scratch;
+    
+    private long[] blockFirst = new long[64];
+    private long[] blockLast = new long[64];
+    private long[] blockOffset = new long[64];
+    private int[] blockCount = new int[64];
+    private int blocks = 0;
+    
+    private long[] eventTimes = new long[64];
+    private int[] eventChannels = new int[64];
+    private int events = 0;
+    
+    private IOException failure;
+
+    public MatchLogWriter(File file) {
+        this(file, DEFAULT_BLOCK_ROWS);
+    }
+
+    public MatchLogWriter(File file, int blockRows) {
+        this.file = file;
+        this.blockRows = blockRows;
+    }
+
+    public void begin(String[] names, int count) {
+        channels = count;
+        isEvent = new boolean[count];
+        times = new long[blockRows];
+        values = new double[blockRows * count];
+        scratch = new byte[blockRows * 10 + 16];
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(file), 1 << 16));
+            out.writeInt(MatchLogFormat.MAGIC);
+            out.writeInt(MatchLogFormat.VERSION);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeUTF(names[i]);
+                isEvent[i] = names[i].startsWith(TelemetryRecorder.EVENT_PREFIX);
+            }
+            out.writeInt(blockRows);
+            offset = out.size();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public void write(long time, double[] row, int count) {
+        if (out == null) {
+            return;
+        }
+        times[rows] = time;
+        for (int c = 0; c < channels; c++) {
+            values[c * blockRows + rows] = row[c];
+            if (isEvent[c] && row[c] != 0.0) {
+                addEvent(time, c);
+            }
+        }
+        rows++;
+        if (rows == blockRows) {
+            flushBlock();
+        }
+    }
+
+    private void addEvent(long time, int channel) {
+        if (events == eventTimes.length) {
+            eventTimes = grow(eventTimes);
+            eventChannels = grow(eventChannels);
+        }
+        eventTimes[events] = time;
+        eventChannels[events] = channel;
+        events++;
+    }
+
+    private void flushBlock() {
+        if (rows == 0 || out == null) {
+            return;
+        }
+        if (blocks == blockFirst.length) {
+            blockFirst = grow(blockFirst);
+            blockLast = grow(blockLast);
+            blockOffset = grow(blockOffset);
+            blockCount = grow(blockCount);
+        }
+        blockFirst[blocks] = times[0];
+        blockLast[blocks] = times[rows - 1];
+        blockOffset[blocks] = offset;
+        blockCount[blocks] = rows;
+        blocks++;
+        
+        try {
+            out.writeInt(rows);
+            long written = 4;
+            
+            // time: first value raw, then delta-of-delta
+            int p = 0;
+            long prev = times[0];
+            long prevDelta = 0;
+            for (int r = 1; r < rows; r++) {
+                long delta = times[r] - prev;
+                p = MatchLogFormat.putVarint(scratch, p,
+                        MatchLogFormat.zigzag(delta - prevDelta));
+                prevDelta = delta;
+                prev = times[r];
+            }
+            out.writeInt(p + 8);
+            out.writeLong(times[0]);
+            out.write(scratch, 0, p);
+            written += 4 + 8 + p;
+            
+            for (int c = 0; c < channels; c++) {
+                p = 0;
+                long prevBits = 0;
+                int base = c * blockRows;
+                for (int r = 0; r < rows; r++) {
+                    long bits = Double.doubleToLongBits(values[base + r]);
+                    p = MatchLogFormat.putVarint(scratch, p, bits ^ prevBits);
+                    prevBits = bits;
+                }
+                out.writeInt(p);
+                out.write(scratch, 0, p);
+                written += 4 + p;
+            }
+            offset += written; // out.size() is an int and wraps at 2 GB
+        } catch (IOException e) {
+            fail(e);
+        }
+        rows = 0;
+    }
+
+    public void close() {
+        if (out == null) {
+            return;
+        }
+        flushBlock();
+        try {
+            long indexOffset = offset;
+            out.writeInt(blocks);
+            for (int b = 0; b < blocks; b++) {
+                out.writeLong(blockFirst[b]);
+                out.writeLong(blockLast[b]);
+                out.writeLong(blockOffset[b]);
+                out.writeInt(blockCount[b]);
+            }
+            out.writeInt(events);
+            for (int e = 0; e < events; e++) {
+                out.writeLong(eventTimes[e]);
+                out.writeInt(eventChannels[e]);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(MatchLogFormat.MAGIC);
+            out.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+        out = null;
+    }
+
+    private void fail(IOException e) {
+        failure = e;
+        out = null;
+        e.printStackTrace();
+    }
+
+    /**
+     * @return Why writing stopped, or null if it didn't.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    private static long[] grow(long[] a) {
+        long[] b = new long[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    private static int[] grow(int[] a) {
+        int[] b = new int[a.length * 2];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+}
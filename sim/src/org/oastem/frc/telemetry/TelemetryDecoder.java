@@ -0,0 +1,91 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.telemetry;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Converts a file written by {@link MappedTelemetrySink} into CSV.
+ * <p>
+ * Usage: {@code TelemetryDecoder <in.tlm> [out.csv]}. Without an output
+ * file the CSV goes to stdout.
+ * </p>
+ */
+public class TelemetryDecoder {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: TelemetryDecoder <in.tlm> [out.csv]");
+            System.exit(2);
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(args.length > 1
+                ? new FileOutputStream(args[1]) : (java.io.OutputStream) System.out, "UTF-8"), 1 << 16);
+        try {
+            decode(new File(args[0]), out);
+        } finally {
+            out.flush();
+            if (args.length > 1) out.close();
+        }
+    }
+
+    public static long decode(File in, Writer out) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(in, "r");
+        try {
+            FileChannel ch = raf.getChannel();
+            MappedByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0,
+                    Math.min(ch.size(), 4096));
+            if (header.getInt() != MappedTelemetrySink.MAGIC) {
+                throw new IOException(in + " is not a telemetry file");
+            }
+            int version = header.getInt();
+            if (version != MappedTelemetrySink.VERSION) {
+                throw new IOException("Unsupported telemetry version " + version);
+            }
+            int channels = header.getInt();
+            int dataOffset = header.getInt();
+            long rows = header.getLong();
+            
+            out.write("time_us");
+            for (int i = 0; i < channels; i++) {
+                byte[] name = new byte[header.getShort()];
+                header.get(name);
+                out.write(',');
+                out.write(new String(name, "UTF-8"));
+            }
+            out.write('\n');
+            
+            int rowSize = 8 + 8 * channels;
+            long available = (ch.size() - dataOffset) / rowSize;
+            rows = Math.min(rows, available);
+            long chunkRows = Math.max(1, (64L * 1024 * 1024) / rowSize);
+            StringBuffer sb = new StringBuffer(256);
+            for (long r = 0; r < rows; r += chunkRows) {
+                long n = Math.min(chunkRows, rows - r);
+                MappedByteBuffer data = ch.map(FileChannel.MapMode.READ_ONLY,
+                        dataOffset + r * rowSize, n * rowSize);
+                for (long k = 0; k < n; k++) {
+                    sb.setLength(0);
+                    sb.append(data.getLong());
+                    for (int c = 0; c < channels; c++) {
+                        sb.append(',').append(data.getDouble());
+                    }
+                    sb.append('\n');
+                    out.write(sb.toString());
+                }
+            }
+            return rows;
+        } finally {
+            raf.close();
+        }
+    }
+}
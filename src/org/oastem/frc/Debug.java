@@ -2,9 +2,20 @@ package org.oastem.frc;
 
 import edu.wpi.first.wpilibj.DriverStationLCD;
 import edu.wpi.first.wpilibj.DriverStationLCD.Line;
+import org.oastem.frc.metrics.LatencyHistogram;
+import org.oastem.frc.metrics.Metrics;
+import org.oastem.frc.time.Clock;
 
 /**
  * A debug class.
+ * <p>
+ * Writes go into a shadow copy of the six LCD lines. Only lines whose text
+ * actually changed are sent to the Driver Station, and no more often than
+ * the flush interval. Writes in between are held; a background thread
+ * sends them once the interval is up, so the last write before a quiet
+ * spell still shows. Clearing only blanks the shadow copy, so a clear
+ * followed by new text goes out as the new text.
+ * </p>
  *
  * @author KTOmega
  */
@@ -20,6 +31,30 @@ public class Debug {
     };
     private static DriverStationLCD ds = DriverStationLCD.getInstance();
 
+    private static final int LINES = 6;
+    private static final int WIDTH = DriverStationLCD.kLineLength;
+    // what we want on screen, and what the DS was last sent
+    private static char[][] shadow = new char[LINES][WIDTH];
+    private static char[][] sent = new char[LINES][WIDTH];
+    private static boolean[] dirty = new boolean[LINES];
+    private static StringBuffer out = new StringBuffer(WIDTH);
+
+    private static volatile long flushInterval = 100; // ms
+    private static long lastFlush = 0;
+    private static long linesSent = 0;
+    private static long suppressed = 0;
+    private static LatencyHistogram logTime = Metrics.histogram("debug.log");
+    private static Thread flusher;
+    // so the flusher doesn't spin with a zero interval
+    private static final long MIN_WAIT = 10; // ms
+
+    static {
+        // sent[] starts as NULs, so the first flush pushes every line
+        for (int i = 0; i < LINES; i++) {
+            fill(shadow[i], 0);
+        }
+    }
+
     /**
      * Log to Driver Station LCD.
      *
@@ -27,63 +62,172 @@ public class Debug {
      * @param col The column - either 1 or 2.
      * @param text The line to send.
      */
-    public static void log(int ln, int col, String text) {
-        Line line = lines[ln - 1];
-        int pos = col == 1 ? 1 : (DriverStationLCD.kLineLength / 2);
+    public static synchronized void log(int ln, int col, String text) {
+        int pos = col == 1 ? 0 : (WIDTH / 2) - 1;
 
         text = text.trim();//.substring(0, (DriverStationLCD.kLineLength / 2) - 1); // Constrain
 
-        clearLine(ln);
-        ds.println(line, pos, text);
+        char[] line = shadow[ln - 1];
+        fill(line, 0);
+        put(line, pos, text);
+        dirty[ln - 1] = true;
         update();
     }
 
-    public static void log(String[] text) {
+    public static synchronized void log(String[] text) {
+        long t = logTime.start();
         for (int i = 0; i < text.length; i++) {
             if (text[i] == null || text[i].trim().equals("")) {
                 continue;
             }
-            Line line = lines[i % 6];
-            int pos = 1;
-            String out = text[i].trim();
-            /*if (text.length > 6) {
-                pos = i < 6 ? 1 : DriverStationLCD.kLineLength / 2;
-                out = out.substring(0, (DriverStationLCD.kLineLength / 2) - 1); // Constrain
-            }*/
-
-            ds.println(line, pos, out);
+            int ln = i % LINES;
+            char[] line = shadow[ln];
+            fill(line, 0);
+            put(line, 0, text[i].trim());
+            dirty[ln] = true;
         }
 
         update();
+        logTime.stop(t);
     }
-    
-    public static void clearLine(int line) {
-        String pad = "";
 
-        for (int i = 0; i < DriverStationLCD.kLineLength; i++) {
-            pad += " ";
-        }
+    /**
+     * Blanks a line. It goes out with the next flush, unless something is
+     * written to it first.
+     */
+    public static synchronized void clearLine(int line) {
+        fill(shadow[line - 1], 0);
+        dirty[line - 1] = true;
+        startFlusher();
+    }
 
-        ds.println(lines[line - 1], 1, pad);
+    /**
+     * Blanks every line, as {@link #clearLine(int)}.
+     */
+    public static synchronized void clear() {
+        for (int i = 0; i < LINES; i++) {
+            fill(shadow[i], 0);
+            dirty[i] = true;
+        }
+        startFlusher();
+    }
 
-        update();
+    /**
+     * @param ms The shortest time between two pushes to the Driver
+     * Station.
+     */
+    public static void setFlushInterval(long ms) {
+        flushInterval = ms;
     }
 
-    public static void clear() {
-        String pad = "";
+    /**
+     * Sends changed lines now, ignoring the flush interval.
+     */
+    public static synchronized void flush() {
+        lastFlush = Clock.getInstance().millis();
+        boolean changed = false;
 
-        for (int i = 0; i < DriverStationLCD.kLineLength; i++) {
-            pad += " ";
+        for (int i = 0; i < LINES; i++) {
+            if (!dirty[i]) {
+                continue;
+            }
+            dirty[i] = false;
+            if (same(shadow[i], sent[i])) {
+                continue;
+            }
+            System.arraycopy(shadow[i], 0, sent[i], 0, WIDTH);
+            out.setLength(0);
+            out.append(shadow[i]);
+            ds.println(lines[i], 1, out);
+            linesSent++;
+            changed = true;
         }
 
-        for (int i = 0; i < 6; i++) {
-            ds.println(lines[i], 1, pad);
+        if (changed) {
+            ds.updateLCD();
         }
+    }
 
-        update();
+    /**
+     * @return Lines actually sent to the Driver Station.
+     */
+    public static synchronized long getLinesSent() {
+        return linesSent;
+    }
+
+    /**
+     * @return Updates held back by the flush interval.
+     */
+    public static synchronized long getSuppressed() {
+        return suppressed;
     }
 
     private static void update() {
-        ds.updateLCD();
+        if (Clock.getInstance().millis() - lastFlush < flushInterval) {
+            suppressed++;
+            startFlusher();
+            return;
+        }
+        flush();
+    }
+
+    private static boolean pending() {
+        for (int i = 0; i < LINES; i++) {
+            if (dirty[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts the thread that sends held lines, if it isn't running yet.
+     */
+    private static void startFlusher() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = new Thread(new Runnable() {
+            public void run() {
+                Clock clock = Clock.getInstance();
+                while (true) {
+                    long wait;
+                    synchronized (Debug.class) {
+                        wait = lastFlush + flushInterval - clock.millis();
+                        if (wait <= 0) {
+                            if (pending()) {
+                                flush();
+                            }
+                            wait = flushInterval;
+                        }
+                    }
+                    clock.sleep(wait < MIN_WAIT ? MIN_WAIT : wait);
+                }
+            }
+        });
+        flusher.setPriority(Thread.MIN_PRIORITY);
+        flusher.start();
+    }
+
+    private static void fill(char[] line, int from) {
+        for (int i = from; i < line.length; i++) {
+            line[i] = ' ';
+        }
+    }
+
+    private static void put(char[] line, int pos, String text) {
+        int n = Math.min(text.length(), line.length - pos);
+        if (n > 0) {
+            text.getChars(0, n, line, pos);
+        }
+    }
+
+    private static boolean same(char[] a, char[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
     }
-}
\ No newline at end of file
+}
@@ -8,17 +8,45 @@ import edu.wpi.first.wpilibj.GenericHID;
 import edu.wpi.first.wpilibj.GenericHID.Hand;
 import edu.wpi.first.wpilibj.Joystick;
 import edu.wpi.first.wpilibj.parsing.IInputOutput;
+import org.oastem.frc.time.Clock;
 
 /**
+ * Two joysticks read as one. {@link #update()} samples every axis and
+ * button of both sticks once, and everything else reads that sample, so
+ * all the code run in a tick sees the same input and asking twice costs
+ * no second HID read. Axes of the pair are merged with
+ * {@link #nonZero(double, double, Hand)}; a button of the pair is down if
+ * it is down on either stick. Each stick can also be asked on its own, by
+ * hand.
+ * <p>
+ * Edges are between the last two samples: a button is pressed for the one
+ * sample where it first reads down. Code that looks less often than the
+ * stick is sampled can miss them.
+ * </p>
  *
  * @author KTOmega
  */
 public class DualJoystick extends GenericHID implements IInputOutput {
+    /** Axes sampled on each stick, numbered from 1. */
+    public static final int AXES = 6;
+    /** Buttons sampled on each stick, numbered from 1. */
+    public static final int BUTTONS = 12;
+
+    // rows of the sample: each stick, then the two merged
+    private static final int LEFT = 0;
+    private static final int RIGHT = 1;
+    private static final int EITHER = 2;
     
     private Joystick left;
     private Joystick right;
     private Hand pref;
 
+    private double[][] axes = new double[3][AXES + 1];
+    private boolean[][] down = new boolean[3][BUTTONS + 1];
+    private boolean[][] wasDown = new boolean[3][BUTTONS + 1];
+    private long[][] downSince = new long[3][BUTTONS + 1];
+    private long sampled = 0;
+
     public DualJoystick(int left, int right, Hand pref) {
         this.left = new Joystick(left);
         this.right = new Joystick(right);
@@ -40,14 +68,22 @@ public class DualJoystick extends GenericHID implements IInputOutput {
     }
 
     private double nonZero(double leftVal, double rightVal) {
+        return nonZero(leftVal, rightVal, pref);
+    }
+
+    /**
+     * Merges one axis from the two sticks: whichever is off center wins,
+     * and if both are, the preferred hand does.
+     */
+    public static double nonZero(double leftVal, double rightVal, Hand pref) {
         if (leftVal == 0) {
             return rightVal;
         } else if (rightVal == 0) {
             return leftVal;
         } else {
-            if (getPreference() == Hand.kLeft) {
+            if (pref == Hand.kLeft) {
                 return leftVal;
-            } else if (getPreference() == Hand.kRight) {
+            } else if (pref == Hand.kRight) {
                 return rightVal;
             } else {
                 return Math.max(leftVal, rightVal);
@@ -55,8 +91,111 @@ public class DualJoystick extends GenericHID implements IInputOutput {
         }
     }
 
+    /**
+     * Samples both sticks. Call once per tick, before anything reads them.
+     */
+    public void update() {
+        long now = Clock.getInstance().millis();
+        for (int a = 1; a <= AXES; a++) {
+            double l = left.getRawAxis(a);
+            double r = right.getRawAxis(a);
+            axes[LEFT][a] = l;
+            axes[RIGHT][a] = r;
+            axes[EITHER][a] = nonZero(l, r);
+        }
+        for (int b = 1; b <= BUTTONS; b++) {
+            sample(LEFT, b, left.getRawButton(b), now);
+            sample(RIGHT, b, right.getRawButton(b), now);
+            sample(EITHER, b, down[LEFT][b] || down[RIGHT][b], now);
+        }
+        sampled = now;
+    }
+
+    private void sample(int row, int b, boolean d, long now) {
+        wasDown[row][b] = down[row][b];
+        if (d && !down[row][b]) {
+            downSince[row][b] = now;
+        }
+        down[row][b] = d;
+    }
+
+    /**
+     * @return When the last sample was taken, in {@link Clock} millis.
+     */
+    public long getSampleTime() {
+        return sampled;
+    }
+
+    private static int row(Hand hand) {
+        return hand.value == Hand.kLeft.value ? LEFT : RIGHT;
+    }
+
+    /**
+     * @return The merged axis.
+     */
+    public double getAxis(int axis) {
+        return axes[EITHER][axis];
+    }
+
+    /**
+     * @return The axis of one stick.
+     */
+    public double getAxis(Hand hand, int axis) {
+        return axes[row(hand)][axis];
+    }
+
+    /**
+     * @return Whether the button is down on either stick.
+     */
+    public boolean isDown(int button) {
+        return down[EITHER][button];
+    }
+
+    public boolean isDown(Hand hand, int button) {
+        return down[row(hand)][button];
+    }
+
+    /**
+     * @return Whether the button went down, on either stick, at the last
+     * sample.
+     */
+    public boolean wasPressed(int button) {
+        return down[EITHER][button] && !wasDown[EITHER][button];
+    }
+
+    public boolean wasPressed(Hand hand, int button) {
+        int r = row(hand);
+        return down[r][button] && !wasDown[r][button];
+    }
+
+    /**
+     * @return Whether the button came up, on both sticks, at the last
+     * sample.
+     */
+    public boolean wasReleased(int button) {
+        return !down[EITHER][button] && wasDown[EITHER][button];
+    }
+
+    public boolean wasReleased(Hand hand, int button) {
+        int r = row(hand);
+        return !down[r][button] && wasDown[r][button];
+    }
+
+    /**
+     * @return How long the button has been down on either stick, in ms as
+     * of the last sample; 0 if it is up.
+     */
+    public long heldFor(int button) {
+        return down[EITHER][button] ? sampled - downSince[EITHER][button] : 0;
+    }
+
+    public long heldFor(Hand hand, int button) {
+        int r = row(hand);
+        return down[r][button] ? sampled - downSince[r][button] : 0;
+    }
+
     public boolean getRawButton(int button) {
-        return left.getRawButton(button) || right.getRawButton(button);
+        return isDown(button);
     }
 
     public boolean getBumper(Hand hand) {
@@ -64,46 +203,34 @@ public class DualJoystick extends GenericHID implements IInputOutput {
     }
 
     public boolean getTop(Hand hand) {
-        return left.getTop() || right.getTop();
+        return isDown(Joystick.kDefaultTopButton);
     }
 
     public double getRawAxis(int axis) {
-        double leftAxis = left.getRawAxis(axis);
-        double rightAxis = right.getRawAxis(axis);
-        return nonZero(leftAxis, rightAxis);
+        return getAxis(axis);
     }
 
     public boolean getTrigger(Hand hand) {
-        return left.getTrigger() || right.getTrigger();
+        return isDown(Joystick.kDefaultTriggerButton);
     }
 
     public double getThrottle() {
-        double leftVal = left.getThrottle();
-        double rightVal = right.getThrottle();
-        return nonZero(leftVal, rightVal);
+        return getAxis(Joystick.kDefaultThrottleAxis);
     }
 
     public double getTwist() {
-        double leftVal = left.getTwist();
-        double rightVal = right.getTwist();
-        return nonZero(leftVal, rightVal);
+        return getAxis(Joystick.kDefaultTwistAxis);
     }
 
     public double getX(Hand hand) {
-        double leftVal = left.getX();
-        double rightVal = right.getX();
-        return nonZero(leftVal, rightVal);
+        return getAxis(Joystick.kDefaultXAxis);
     }
 
     public double getY(Hand hand) {
-        double leftVal = left.getY();
-        double rightVal = right.getY();
-        return nonZero(leftVal, rightVal);
+        return getAxis(Joystick.kDefaultYAxis);
     }
 
     public double getZ(Hand hand) {
-        double leftVal = left.getZ();
-        double rightVal = right.getZ();
-        return nonZero(leftVal, rightVal);
+        return getAxis(Joystick.kDefaultZAxis);
     }
 }
\ No newline at end of file
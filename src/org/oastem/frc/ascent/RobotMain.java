@@ -6,7 +6,9 @@
 /*----------------------------------------------------------------------------*/
 package org.oastem.frc.ascent;
 
+import org.oastem.frc.control.DriveMath;
 import org.oastem.frc.control.DriveSystem;
+import org.oastem.frc.control.OutputFilter;
 import org.oastem.frc.*;
 import org.oastem.frc.ascent.roborealm.*;
 
@@ -19,11 +21,24 @@ import edu.wpi.first.wpilibj.networktables.NetworkTable;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import org.oastem.frc.ascent.roborealm.RealmServer;
 import org.oastem.frc.ascent.external.FastMath;
+import org.oastem.frc.ascent.shooting.FeedController;
 import org.oastem.frc.ascent.shooting.GoalDriver;
 import org.oastem.frc.ascent.shooting.ThreadedShooter;
+import org.oastem.frc.log.Log;
+import org.oastem.frc.log.LogRing;
+import org.oastem.frc.metrics.Gauge;
+import org.oastem.frc.metrics.LatencyHistogram;
+import org.oastem.frc.metrics.Metrics;
 import org.oastem.frc.pid.TargetOutput;
+import org.oastem.frc.sched.PeriodicTask;
+import org.oastem.frc.sched.TaskScheduler;
+import org.oastem.frc.telemetry.TelemetryRecorder;
+import org.oastem.frc.time.Clock;
 
 public class RobotMain extends SimpleRobot {
+    
+    private static final int ABOUT_TO_FIRE = Log.define("About to fire");
+    private static final int PARK_PRESSED = Log.define("Button 8 pressed");
 
     // Victors
     public static final int TRAAM = 5;//5
@@ -33,6 +48,10 @@ public class RobotMain extends SimpleRobot {
     public static final int RIGHT_DRIVE = 1;
     public static final int LEFT_DRIVE_2 = 3;
     public static final int RIGHT_DRIVE_2 = 6;
+    // full forward to full reverse in a quarter second
+    private static final double DRIVE_SLEW = 8.0;
+    // shooter wheel spin-up time constant, seconds
+    private static final double SHOOTER_RAMP = 0.15;
     
     private int TARGET_WIDTH_SOURCE = 0;
     private int TARGET_ANGLE_SOURCE = 1;
@@ -73,7 +92,6 @@ public class RobotMain extends SimpleRobot {
     private double latestEnc = 0.0;
     private double rawEnc = 0.0;
     private double lastRawEnc = 0.0;
-    private boolean feedEngaged = false;
     private double dist = 0.0;
     private double shooterSpeed = 0.0;
     private double lastDist = 0.0;
@@ -82,7 +100,31 @@ public class RobotMain extends SimpleRobot {
     private TargetOutput to = new TargetOutput();
     private long lastFire = 0;
     private String[] debug = new String[6];
-    private boolean parked = false;
+    private FeedController feed = new FeedController(drive, FEED_ARM);
+    private boolean boosting = false;
+    // the operatorControl thread's log
+    private LogRing log = Log.ring("main", 64);
+    // Per-tick telemetry, about 10 s at 200 Hz
+    private TelemetryRecorder telemetry = new TelemetryRecorder(2000);
+    private int T_LEFT, T_RIGHT, T_SHOOTER, T_FIRE_LIM, T_LOOP;
+    private int EV_FIRE, EV_PARK, EV_RELEASE;
+    private double driveLeft = 0.0;
+    private double driveRight = 0.0;
+    private double[] mix = new double[2];
+    private long loopTime = 0;
+    // Metrics
+    private final int METRICS_DUMP_BUTTON = 6;
+    private LatencyHistogram driveTime = Metrics.histogram("drive.arcade");
+    // by the scheduler's clock, unlike the histograms' FPGA time; under
+    // the simulator's VirtualClock tasks take no time, so it reads 0
+    private Gauge cpu = Metrics.gauge("sched.cpu %");
+    private int publishTicks = 0;
+    // operatorControl runs as a set of periodic tasks
+    private TaskScheduler tasks = new TaskScheduler(6);
+    // all timing goes through here so the simulator can run it virtually
+    private Clock clock = Clock.getInstance();
+    private boolean dashboardControlWheel = false;
+    private final int DASHBOARD_WHEEL_BUTTON = 7;
 
     protected void robotInit() {
         Debug.clear();
@@ -92,9 +134,16 @@ public class RobotMain extends SimpleRobot {
         //drive.addVictor(TRAAM);
         drive.addVictor(SHOOTER_WHEEL);
         drive.addVictor(FEED_ARM);
+        // whoever is driving, the motors change speed gently enough not
+        // to brown out the battery
+        drive.addFilter(DriveSystem.DRIVE, OutputFilter.slew(DRIVE_SLEW),
+                OutputFilter.slew(DRIVE_SLEW));
+        drive.addFilter(SHOOTER_WHEEL, OutputFilter.ramp(SHOOTER_RAMP));
         //drive.setSafetyEnabled(false);
         drive.setSafety(false);
         
+        initTasks();
+        
         System.out.println("End of RobotInit");
         
         //park(debug);
@@ -107,6 +156,7 @@ public class RobotMain extends SimpleRobot {
 
     public void autonomous() {
         park(debug);
+        finishFeed();
         
         Debug.clear();
         //String[] debug = new String[6];
@@ -199,10 +249,6 @@ public class RobotMain extends SimpleRobot {
         this.isAutonomous = false;
     }
 
-    private double scaleZ(double rawZ) {
-        return 0.5 - 0.5 * rawZ;
-    }
-
     public void operatorControl() {
         //String[] debug = new String[6];
 
@@ -211,155 +257,243 @@ public class RobotMain extends SimpleRobot {
         
         //park(debug);
 
-        boolean shooterPressed = false;
-        boolean dashboardControlWheel = false;
-        boolean crap = false;
-        while (isOperatorControl() && isEnabled()) {
-            long currentTime = System.currentTimeMillis();
-            
-            if (shooterSpeed > 1.0) {
-                shooterSpeed = 1.0;
-                this.controlShooter(true, debug);
-            } else if (shooterSpeed < 0.0) {
-                shooterSpeed = 0.0;
-                this.controlShooter(true, debug);
+        dashboardControlWheel = false;
+        tasks.reset();
+        // every motor command of a tick goes out together at its end
+        drive.resend();
+        drive.setBatching(true);
+        try {
+            while (isOperatorControl() && isEnabled()) {
+                tasks.runOnce();
+                drive.flush();
+                // the work only, not the wait for the next deadline
+                loopTime = clock.micros() - tasks.getWoke();
             }
-            
-            /*if (currentTime - lastFire > 5000) {
-                park(debug);
-            }*/
-            
+        } finally {
+            drive.setBatching(false);
+        }
+    }
 
-            // Drives the robot using joystick control
-            this.doArcadeDrive(debug);
+    /**
+     * Sets up the tasks operatorControl runs. Each subsystem gets its own
+     * rate; the drive runs first whenever several are due.
+     */
+    private void initTasks() {
+        T_LEFT = telemetry.addChannel("drive_left");
+        T_RIGHT = telemetry.addChannel("drive_right");
+        T_SHOOTER = telemetry.addChannel("shooter_speed");
+        T_FIRE_LIM = telemetry.addChannel("fire_lim");
+        T_LOOP = telemetry.addChannel("loop_us");
+        EV_FIRE = telemetry.addEventChannel("fire");
+        EV_PARK = telemetry.addEventChannel("park");
+        EV_RELEASE = telemetry.addEventChannel("release");
+        
+        // the sticks are read once a tick, before anything uses them
+        tasks.add("input", new PeriodicTask() {
+            public void tick() {
+                dual.update();
+                if (dual.wasPressed(Hand.kLeft, METRICS_DUMP_BUTTON)) {
+                    Metrics.dump(System.out);
+                }
+            }
+        }, 20, 5);
+        
+        tasks.add("drive", new PeriodicTask() {
+            public void tick() {
+                // Drives the robot using joystick control
+                doArcadeDrive(debug);
+            }
+        }, 20, 4);
+        
+        tasks.add("shooter", new PeriodicTask() {
+            public void tick() {
+                controlShooterButtons();
+            }
+        }, 20, 3);
+        
+        tasks.add("feed", new PeriodicTask() {
+            public void tick() {
+                controlFeed();
+            }
+        }, 20, 2);
+        
+        tasks.add("debug", new PeriodicTask() {
+            public void tick() {
+                updateDebug();
+            }
+        }, 100, 1);
+        
+        tasks.add("telemetry", new PeriodicTask() {
+            public void tick() {
+                recordTelemetry();
+            }
+        }, 5, 0);
+    }
 
-            // Camera
-            /*if (table.isConnected() && table.containsKey("online")) {
-                debug[0] = "Tracker online...";
-                if (table.containsKey("targetSelected") && table.getNumber("targetSelected") != -1) {
-                    double width = table.getNumber("width");
-                    double angle = table.getNumber("angle");
-                    double height = table.getNumber("height");
+    private void recordTelemetry() {
+        telemetry.set(T_LEFT, driveLeft);
+        telemetry.set(T_RIGHT, driveRight);
+        telemetry.set(T_SHOOTER, shooterSpeed);
+        telemetry.set(T_FIRE_LIM, fireLim.get());
+        telemetry.set(T_LOOP, loopTime);
+        telemetry.commit();
+    }
+    
+    public TelemetryRecorder getTelemetry() {
+        return telemetry;
+    }
 
-                    debug[3] = "Height: " + height;
-                    debug[4] = "Angle: " + angle;
-                    debug[5] = "Width: " + width;
+    private void controlShooterButtons() {
+        if (shooterSpeed > 1.0) {
+            shooterSpeed = 1.0;
+            this.controlShooter(true, debug);
+        } else if (shooterSpeed < 0.0) {
+            shooterSpeed = 0.0;
+            this.controlShooter(true, debug);
+        }
 
-                    double[] params = (new double[]{width, angle, height});
-                    autoFire(params);
-                    //System.out.println("Updated... fire! " + (firing ? "true" : "false"));
-                    //autoFire();
+        // Camera
+        /*if (table.isConnected() && table.containsKey("online")) {
+            debug[0] = "Tracker online...";
+            if (table.containsKey("targetSelected") && table.getNumber("targetSelected") != -1) {
+                double width = table.getNumber("width");
+                double angle = table.getNumber("angle");
+                double height = table.getNumber("height");
 
+                debug[3] = "Height: " + height;
+                debug[4] = "Angle: " + angle;
+                debug[5] = "Width: " + width;
 
-                }
-            } else {
-                debug[0] = "NT Offline";
-            }*/
+                double[] params = (new double[]{width, angle, height});
+                autoFire(params);
+                //System.out.println("Updated... fire! " + (firing ? "true" : "false"));
+                //autoFire();
 
-            // Controls the TRAAM (moves up and down)
 
-            /*if (dual.getRawButton(TRAAM_UP_BUTTON)) {
-                this.controlTraam(Direction.UP, debug);
-            } else if (dual.getRawButton(TRAAM_DOWN_BUTTON)) {
-                this.controlTraam(Direction.DOWN, debug);
-            } else {
-                this.controlTraam(Direction.RIGHT, debug); // RIGHT = turn off.
-            }*/
-            
-            if (dashboardControlWheel) {
-                debug[0] = "Dashboard given control";
-                try {
-                    shooterSpeed = SmartDashboard.getNumber("Slider 1")/100;
-                    this.controlShooter(true, debug);
-                } catch (Exception e) {
-                    
-                }
-            }
-            
-            if (!crap && left.getRawButton(7)) {
-                crap = true;
-                dashboardControlWheel = !dashboardControlWheel;
-            }
-            
-            if (!left.getRawButton(7)) {
-                crap = false;
             }
+        } else {
+            debug[0] = "NT Offline";
+        }*/
 
-            // Controls the shooter wheel.
-            if (!left.getRawButton(SHOOTER_ON_BUTTON) && !left.getRawButton(SHOOTER_OFF_BUTTON)) {
-                shooterPressed = false;
-            }
+        // Controls the TRAAM (moves up and down)
 
-            if (!shooterPressed && left.getRawButton(SHOOTER_ON_BUTTON)) {
-                shooterPressed = true;
-                if (shooterSpeed < 1.0) {
-                    shooterSpeed = shooterSpeed + 0.1;
-                }
-                this.controlShooter(true, debug);
-            } else if (!shooterPressed && left.getRawButton(SHOOTER_OFF_BUTTON)) {
-                shooterPressed = true;
-                if (shooterSpeed > 0.0) {
-                    shooterSpeed = shooterSpeed - 0.1;
-                }
+        /*if (dual.getRawButton(TRAAM_UP_BUTTON)) {
+            this.controlTraam(Direction.UP, debug);
+        } else if (dual.getRawButton(TRAAM_DOWN_BUTTON)) {
+            this.controlTraam(Direction.DOWN, debug);
+        } else {
+            this.controlTraam(Direction.RIGHT, debug); // RIGHT = turn off.
+        }*/
+        
+        if (dashboardControlWheel) {
+            debug[0] = "Dashboard given control";
+            try {
+                shooterSpeed = SmartDashboard.getNumber("Slider 1")/100;
                 this.controlShooter(true, debug);
+            } catch (Exception e) {
+                
             }
+        }
+        
+        if (dual.wasPressed(Hand.kLeft, DASHBOARD_WHEEL_BUTTON)) {
+            dashboardControlWheel = !dashboardControlWheel;
+        }
 
-            // Fires a frisbee from the magazine.
-            if (!feedEngaged && currentTime - lastFire > 1200 && dual.getRawButton(FIRE_BUTTON)) {
-                System.out.println("About to fire");
-                this.dispensePayload(debug);
-                lastFire = currentTime;
+        // Controls the shooter wheel.
+        if (dual.wasPressed(Hand.kLeft, SHOOTER_ON_BUTTON)) {
+            if (shooterSpeed < 1.0) {
+                shooterSpeed = shooterSpeed + 0.1;
             }
-
-            if (left.getRawButton(PARK_BUTTON)) {
-                this.park(debug);
-                System.out.println("Button 8 pressed");
+            this.controlShooter(true, debug);
+        } else if (dual.wasPressed(Hand.kLeft, SHOOTER_OFF_BUTTON)) {
+            if (shooterSpeed > 0.0) {
+                shooterSpeed = shooterSpeed - 0.1;
             }
+            this.controlShooter(true, debug);
+        }
+        
+        if (dual.isDown(Hand.kLeft, 11)) {
+            shooterSpeed = 1.0;
+            this.controlShooter(true, debug);
+        }
+        
+        if (dual.isDown(Hand.kLeft, 10)) {
+            shooterSpeed = 0.0;
+            this.controlShooter(false, debug);
+        }
+    }
 
-            if (left.getRawButton(RELEASE_BUTTON)) {
-                this.release(debug);
-            }
-            
-            if (left.getRawButton(11)) {
-                shooterSpeed = 1.0;
-                this.controlShooter(true, debug);
-            }
-            
-            if (left.getRawButton(10)) {
-                shooterSpeed = 0.0;
-                this.controlShooter(false, debug);
-            }
-            
-            /*if (left.getRawButton(6)) {
-                if (tr != null) {
-                    tr.stop();
-                    gd.stop();
-                }
-            }*/
+    private void controlFeed() {
+        long currentTime = clock.millis();
+        
+        feed.step(currentTime, fireLim.get());
+        boostShooter(currentTime);
+        
+        if (feed.getState() == FeedController.PARKING && dual.isDown(Hand.kLeft, 3)) {
+            debug[1] = "y u break dis??!";
+            feed.abort();
+        }
+        
+        /*if (currentTime - lastFire > 5000) {
+            park(debug);
+        }*/
 
-            debug[1] = "Shooter: " + shooterSpeed;
+        // Fires a frisbee from the magazine.
+        if (!feed.isBusy() && currentTime - lastFire > 1200 && dual.isDown(FIRE_BUTTON)) {
+            log.log(Log.INFO, ABOUT_TO_FIRE);
+            this.dispensePayload(debug);
+            lastFire = currentTime;
+        }
 
-            debug[2] = fireLim.get() ? "t" : "f"; //"RPM: " + latestEnc;
-            long timeDelta = currentTime - ticks;
-            if (timeDelta > 250) {
-                Debug.clear();
-                //latestEnc = Math.abs((enc.getRate() * 60) / 360);
-                ticks = currentTime;
-            }
+        if (dual.isDown(Hand.kLeft, PARK_BUTTON)) {
+            this.park(debug);
+            log.log(Log.INFO, PARK_PRESSED);
+        }
 
-            // SmartDashboard stuff
-            //SmartDashboard.putNumber("Shooter Wheel", shooterSpeed);
+        if (dual.isDown(Hand.kLeft, RELEASE_BUTTON)) {
+            this.release(debug);
+        }
+        
+        /*if (left.getRawButton(6)) {
+            if (tr != null) {
+                tr.stop();
+                gd.stop();
+            }
+        }*/
+    }
 
-            // Log the data to the DS and do a small delay before next iteration.
-            Debug.log(debug);
+    private void updateDebug() {
+        long currentTime = clock.millis();
+        
+        cpu.set(tasks.getTotalCpuPercent());
+        if (++publishTicks >= 5) {
+            // twice a second is plenty for the dashboard
+            publishTicks = 0;
+            Metrics.publish();
+        }
+        debug[1] = "Shooter: " + shooterSpeed;
+
+        debug[2] = fireLim.get() ? "t" : "f"; //"RPM: " + latestEnc;
+        long timeDelta = currentTime - ticks;
+        if (timeDelta > 250) {
+            Debug.clear();
+            //latestEnc = Math.abs((enc.getRate() * 60) / 360);
+            ticks = currentTime;
         }
+
+        // SmartDashboard stuff
+        //SmartDashboard.putNumber("Shooter Wheel", shooterSpeed);
+
+        // Log the data to the DS.
+        Debug.log(debug);
     }
 
     /**
      * Runs after robot is disabled. Clears debug window.
      */
     public void disabled() {
-        park(debug);
+        // outputs are off while disabled, so the arm can't park; just stop
+        feed.abort();
         //table.putBoolean("fired", true);
         //table.putNumber("targetSelected", -1);
         firing = false;
@@ -387,7 +521,7 @@ public class RobotMain extends SimpleRobot {
             gd.update(args[TARGET_ANGLE_SOURCE], args[TARGET_WIDTH_SOURCE]);
             tr.update(args);
             
-            if (gd.canShoot() && timesFired < 4 && !feedEngaged &&
+            if (gd.canShoot() && timesFired < 4 && !feed.isBusy() &&
                     System.currentTimeMillis() - lastFire > 1500) {
                 this.dispensePayload(debug);
                 timesFired++;
@@ -426,67 +560,53 @@ public class RobotMain extends SimpleRobot {
     }
 
     private void dispensePayload(String[] debug) {
-        //if (parked) this.release(debug);
-        System.out.println("About to park!");
-        this.park(debug);
-        Timer.delay(0.3);
-        System.out.println("About to release!");
-        this.release(debug);
-
-        this.temporarilyAccelerateShooter();
+        if (feed.fire(clock.millis())) {
+            telemetry.mark(EV_FIRE);
+        }
     }
 
-    private void temporarilyAccelerateShooter() {
-        // should theoretically work.
-        drive.set(SHOOTER_WHEEL, shooterSpeed + 0.1);
-        Timer.delay(1.0);
-        drive.set(SHOOTER_WHEEL, shooterSpeed);
+    /**
+     * Keeps the shooter a little hot while the feed says the wheel is
+     * recovering from a shot.
+     */
+    private void boostShooter(long currentTime) {
+        boolean boost = feed.isBoosting(currentTime);
+        if (boost != boosting) {
+            boosting = boost;
+            drive.set(SHOOTER_WHEEL, boost ? shooterSpeed + 0.1 : shooterSpeed);
+        }
     }
 
     private void park(String[] debug) {
-        feedEngaged = true;
-        parked = true;
-        drive.set(FEED_ARM, 0.3);
-        System.out.println("To For loop!");
-        for (; fireLim.get() ;) {
-            //Timer.delay(period);
-        //int thresh = 0;
-        //while(!fireLim.get() && thresh < 1000){
-            System.out.println("OMG IN LOOP!");
-            debug[1] = "dat loop!";
-            if(left.getRawButton(3)){
-                debug[1] = "y u break dis??!";
-                break;
-                
-            }
-            //thresh++;
-            
+        if (feed.park(clock.millis())) {
+            telemetry.mark(EV_PARK);
         }
-        System.out.println("Out of loop");
-        drive.set(FEED_ARM, 0.0);
-
-        feedEngaged = false;
     }
 
     private void release(String[] debug) {
-        feedEngaged = true;
-        drive.set(FEED_ARM, -0.3);
-        //Timer.delay(avgStart * 1/0.4);
-        Timer.delay(0.14);
-        System.out.println("I am in release mode");
-        debug[1] = "Gonna fire, dude";
-
-        drive.set(FEED_ARM, 0.0);
+        if (feed.release(clock.millis())) {
+            telemetry.mark(EV_RELEASE);
+            debug[1] = "Gonna fire, dude";
+        }
+    }
 
-        parked = false;
-        feedEngaged = false;
+    /**
+     * Steps the feed until it is idle. Only for modes that have nothing
+     * else to do meanwhile.
+     */
+    private void finishFeed() {
+        while (feed.isBusy() && isEnabled()) {
+            feed.step(clock.millis(), fireLim.get());
+            clock.delay(0.02);
+        }
+        feed.abort();
     }
 
     private void doOrigArcadeDrive(String[] debug) {
-        joyScale = scaleZ(left.getZ());
+        joyScale = DriveMath.scaleZ(dual.getAxis(Hand.kLeft, Joystick.kDefaultZAxis));
 
-        double leftMove = (left.getY() * joyScale) * -1;
-        double rightMove = (left.getX() * joyScale);
+        double leftMove = (dual.getAxis(Hand.kLeft, Joystick.kDefaultYAxis) * joyScale) * -1;
+        double rightMove = (dual.getAxis(Hand.kLeft, Joystick.kDefaultXAxis) * joyScale);
 
         debug[3] = "Scale: " + joyScale;
         debug[4] = "Left: " + leftMove;
@@ -496,42 +616,21 @@ public class RobotMain extends SimpleRobot {
     }
 
     private void doArcadeDrive(String[] debug) {
-        double leftMove = 0.0;
-        double rightMove = 0.0;
-        double zone = 0.04;
-
-        joyScale = scaleZ(left.getZ());
+        long t = driveTime.start();
+        joyScale = DriveMath.scaleZ(dual.getAxis(Hand.kLeft, Joystick.kDefaultZAxis));
 
-        double x = left.getX();
-        double y = left.getY();
-
-        if (Math.abs(y) > zone) {
-            leftMove = y;
-            rightMove = y;
-        }
-
-        if (Math.abs(x) > zone) {
-            leftMove = correct(leftMove + x);
-            rightMove = correct(rightMove - x);
-        }
-
-        leftMove *= joyScale * -1;
-        rightMove *= joyScale * -1;
+        DriveMath.arcade(dual.getAxis(Hand.kLeft, Joystick.kDefaultXAxis),
+                dual.getAxis(Hand.kLeft, Joystick.kDefaultYAxis), joyScale, mix);
+        double leftMove = mix[0];
+        double rightMove = mix[1];
 
         debug[3] = "Scale: " + joyScale;
         debug[4] = "Left: " + leftMove;
         debug[5] = "Right: " + rightMove;
 
+        driveLeft = leftMove;
+        driveRight = rightMove;
         drive.tankDrive(leftMove, rightMove);
-    }
-
-    private double correct(double val) {
-        if (val > 1.0) {
-            return 1.0;
-        }
-        if (val < -1.0) {
-            return -1.0;
-        }
-        return val;
+        driveTime.stop(t);
     }
 }
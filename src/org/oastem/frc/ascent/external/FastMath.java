@@ -17,8 +17,6 @@
 
 package org.oastem.frc.ascent.external;
 
-import java.io.PrintStream;
-
 /**
  * Faster, more accurate, portable alternative to {@link Math} and
  * {@link StrictMath} for large scale computation.
@@ -54,6 +52,23 @@ import java.io.PrintStream;
  * Maker's Dilemma</a>).
  * </p>
  * <p>
+ * The functions the Squawk VM's CLDC Math is missing or slow at
+ * ({@link #atan2(double, double)}, {@link #sin(double)}, {@link #cos(double)},
+ * {@link #tan(double)}, {@link #asin(double)}, {@link #acos(double)},
+ * {@link #sqrt(double)}, {@link #hypot(double, double)}, {@link #exp(double)}
+ * and {@link #log(double)}) come in two accuracies, picked per call or
+ * for everyone with {@link #setAccuracy(int)}:
+ * <ul>
+ * <li>{@link #ACCURATE} (the default) stays within a few ulp of
+ * StrictMath.</li>
+ * <li>{@link #FAST} interpolates in small tables and is off by about
+ * 1e-7; each method gives its bound. Each table is computed the first
+ * time a method needs it.</li>
+ * </ul>
+ * The desktop check in sim (FastMathAccuracy, target accuracy) holds both modes to
+ * these bounds against StrictMath.
+ * </p>
+ * <p>
  * FastMath additionally implements the following methods not found in Math/StrictMath:
  * <ul>
  * <li>{@link #asinh(double)}</li>
@@ -85,24 +100,6 @@ public class FastMath {
     /** Napier's constant e, base of the natural logarithm. */
     public static final double E = 2850325.0 / 1048576.0 + 8.254840070411028747e-8;
 
-    /** Index of exp(0) in the array of integer exponentials. */
-    static final int EXP_INT_TABLE_MAX_INDEX = 750;
-    /** Length of the array of integer exponentials. */
-    static final int EXP_INT_TABLE_LEN = EXP_INT_TABLE_MAX_INDEX * 2;
-    /** Logarithm table length. */
-    static final int LN_MANT_LEN = 1024;
-    /** Exponential fractions table length. */
-    static final int EXP_FRAC_TABLE_LEN = 1025; // 0, 1/1024, ... 1024/1024
-
-    /** Indicator for tables initialization.
-     * <p>
-     * This compile-time constant should be set to true only if one explicitly
-     * wants to compute the tables at class loading time instead of using the
-     * already computed ones provided as literal arrays below.
-     * </p>
-     */
-    private static final boolean RECOMPUTE_TABLES_AT_RUNTIME = false;
-
     /** Tangent table, used by atan() (high bits). */
     private static final double TANGENT_TABLE_A[] =
         {
@@ -203,6 +200,89 @@ public class FastMath {
     /** Constant: {@value}. */
     private static final double F_1_4 = 1d / 4d;
 
+    /** Accuracy: interpolate in tables, about 1e-7 off. */
+    public static final int FAST = 0;
+    /** Accuracy: within a few ulp of StrictMath. */
+    public static final int ACCURATE = 1;
+
+    /** Accuracy used by the methods that don't take one. */
+    private static int accuracy = ACCURATE;
+
+    /** Points per table; the tables hold one more. */
+    private static final int TABLE_SIZE = 1024;
+
+    /** FAST table: sin over [0, pi/2]. */
+    private static final int SIN_TABLE = 0;
+    /** FAST table: atan over [0, 1]. */
+    private static final int ATAN_TABLE = 1;
+    /** FAST table: sqrt over [1, 4]. */
+    private static final int SQRT_TABLE = 2;
+    /** FAST table: 2<sup>x</sup> over [0, 1]. */
+    private static final int EXP_TABLE = 3;
+    /** FAST table: log over [1, 2]. */
+    private static final int LOG_TABLE = 4;
+
+    /** Beyond this, FAST trigonometry falls back to ACCURATE. */
+    private static final double FAST_TRIG_MAX = 1e6;
+
+    /** Above this, hypot() can't square its arguments directly. */
+    private static final double HYPOT_SAFE_MAX = 1e150;
+
+    /** Below this, hypot() can't square its arguments directly. */
+    private static final double HYPOT_SAFE_MIN = 1e-150;
+
+    /** Pi/2, high 33 bits, so multiples of it up to 2^20 are exact. */
+    private static final double PI_2_HI = 1.5707963267341256e+00;
+
+    /** Pi/2 minus {@link #PI_2_HI}. */
+    private static final double PI_2_LO = 6.0771005065061922e-11;
+
+    /** ln(2), high 32 bits. */
+    private static final double LN_2_HI = 6.93147180369123816490e-01;
+
+    /** ln(2) minus {@link #LN_2_HI}. */
+    private static final double LN_2_LO = 1.90821492927058770002e-10;
+
+    /** ln(2). */
+    private static final double LN_2 = 0.6931471805599453;
+
+    /** 1/ln(2). */
+    private static final double LOG2_E = 1.4426950408889634;
+
+    /** exp() overflows above this. */
+    private static final double EXP_MAX = 709.782712893384;
+
+    /** exp() underflows to zero below this. */
+    private static final double EXP_MIN = -745.1332191019412;
+
+    /** sqrt(2). */
+    private static final double SQRT_2 = 1.4142135623730951;
+
+    /** 2^54, scales subnormals up to normal. */
+    private static final double TWO_POWER_54 = 18014398509481984.0;
+
+    /** Smallest normal double. */
+    private static final double SAFE_MIN = 2.2250738585072014E-308;
+
+    /** Mask for the mantissa bits of a double. */
+    private static final long MANTISSA_MASK = 0x000fffffffffffffL;
+
+    /** Bits of 1.0. */
+    private static final long ONE_BITS = 0x3ff0000000000000L;
+
+    /** 1/n! for n = 2 to 13, used by exp(). */
+    private static final double[] EXP_COEF = {
+        1d / 2, 1d / 6, 1d / 24, 1d / 120, 1d / 720, 1d / 5040,
+        1d / 40320, 1d / 362880, 1d / 3628800, 1d / 39916800,
+        1d / 479001600, 1d / 6227020800d
+    };
+
+    /** 2/(2n+1) for n = 1 to 10, used by log(). */
+    private static final double[] LOG_COEF = {
+        2d / 3, 2d / 5, 2d / 7, 2d / 9, 2d / 11,
+        2d / 13, 2d / 15, 2d / 17, 2d / 19, 2d / 21
+    };
+
     /**
      * Private Constructor
      */
@@ -397,4 +477,711 @@ public class FastMath {
 
         return result;
     }
-}
\ No newline at end of file
+
+    /**
+     * Sets the accuracy for the methods that don't take one.
+     * @param a {@link #FAST} or {@link #ACCURATE}
+     */
+    public static void setAccuracy(int a) {
+        accuracy = a;
+    }
+
+    /**
+     * @return the accuracy used by the methods that don't take one
+     */
+    public static int getAccuracy() {
+        return accuracy;
+    }
+
+    /**
+     * Arctangent function
+     * @param x a number
+     * @param a {@link #FAST} (within 1e-7) or {@link #ACCURATE}
+     * @return atan(x)
+     */
+    public static double atan(double x, int a) {
+        return a == FAST ? fastAtan(x) : atan(x, 0.0, false);
+    }
+
+    /**
+     * Two arguments arctangent function
+     * @param y ordinate
+     * @param x abscissa
+     * @return phase angle of point (x,y) between {@code -PI} and {@code PI}
+     */
+    public static double atan2(double y, double x) {
+        return atan2(y, x, accuracy);
+    }
+
+    /**
+     * Two arguments arctangent function
+     * @param y ordinate
+     * @param x abscissa
+     * @param a {@link #FAST} (within 1e-7) or {@link #ACCURATE} (2 ulp)
+     * @return phase angle of point (x,y) between {@code -PI} and {@code PI}
+     */
+    public static double atan2(double y, double x, int a) {
+        return a == FAST ? fastAtan2(y, x) : accurateAtan2(y, x);
+    }
+
+    /**
+     * Sine function.
+     * @param x Argument.
+     * @return sin(x)
+     */
+    public static double sin(double x) {
+        return sin(x, accuracy);
+    }
+
+    /**
+     * Sine function.
+     * @param x Argument.
+     * @param a {@link #FAST} (within 1e-6 for |x| up to 1e6, ACCURATE
+     * beyond) or {@link #ACCURATE} (1 ulp)
+     * @return sin(x)
+     */
+    public static double sin(double x, int a) {
+        return a == FAST ? fastSin(x, 0) : Math.sin(x);
+    }
+
+    /**
+     * Cosine function.
+     * @param x Argument.
+     * @return cos(x)
+     */
+    public static double cos(double x) {
+        return cos(x, accuracy);
+    }
+
+    /**
+     * Cosine function.
+     * @param x Argument.
+     * @param a {@link #FAST} (within 1e-6 for |x| up to 1e6, ACCURATE
+     * beyond) or {@link #ACCURATE} (1 ulp)
+     * @return cos(x)
+     */
+    public static double cos(double x, int a) {
+        return a == FAST ? fastSin(Math.abs(x), 1) : Math.cos(x);
+    }
+
+    /**
+     * Tangent function.
+     * @param x Argument.
+     * @return tan(x)
+     */
+    public static double tan(double x) {
+        return tan(x, accuracy);
+    }
+
+    /**
+     * Tangent function.
+     * @param x Argument.
+     * @param a {@link #FAST} (relative error within 1e-6 where
+     * |cos(x)| > 0.01, growing as 1/cos(x) towards the poles) or
+     * {@link #ACCURATE} (1 ulp)
+     * @return tan(x)
+     */
+    public static double tan(double x, int a) {
+        return a == FAST ? fastTan(x) : Math.tan(x);
+    }
+
+    /**
+     * Compute the arc sine of a number.
+     * @param x number on which evaluation is done
+     * @return arc sine of x
+     */
+    public static double asin(double x) {
+        return asin(x, accuracy);
+    }
+
+    /**
+     * Compute the arc sine of a number.
+     * @param x number on which evaluation is done
+     * @param a {@link #FAST} (within 1e-6) or {@link #ACCURATE} (2 ulp)
+     * @return arc sine of x
+     */
+    public static double asin(double x, int a) {
+        if (x != x || x > 1.0 || x < -1.0) {
+            return Double.NaN;
+        }
+        if (a == FAST) {
+            return fastAtan2(x, fastSqrt((1.0 - x) * (1.0 + x)));
+        }
+        return accurateAtan2(x, Math.sqrt((1.0 - x) * (1.0 + x)));
+    }
+
+    /**
+     * Compute the arc cosine of a number.
+     * @param x number on which evaluation is done
+     * @return arc cosine of x
+     */
+    public static double acos(double x) {
+        return acos(x, accuracy);
+    }
+
+    /**
+     * Compute the arc cosine of a number.
+     * @param x number on which evaluation is done
+     * @param a {@link #FAST} (within 1e-6) or {@link #ACCURATE} (2 ulp)
+     * @return arc cosine of x
+     */
+    public static double acos(double x, int a) {
+        if (x != x || x > 1.0 || x < -1.0) {
+            return Double.NaN;
+        }
+        if (a == FAST) {
+            return fastAtan2(fastSqrt((1.0 - x) * (1.0 + x)), x);
+        }
+        return accurateAtan2(Math.sqrt((1.0 - x) * (1.0 + x)), x);
+    }
+
+    /** Compute the square root of a number.
+     * @param x number on which evaluation is done
+     * @return square root of x
+     */
+    public static double sqrt(double x) {
+        return sqrt(x, accuracy);
+    }
+
+    /** Compute the square root of a number.
+     * @param x number on which evaluation is done
+     * @param a {@link #FAST} (relative error within 1e-6) or
+     * {@link #ACCURATE} (correctly rounded)
+     * @return square root of x
+     */
+    public static double sqrt(double x, int a) {
+        return a == FAST ? fastSqrt(x) : Math.sqrt(x);
+    }
+
+    /**
+     * Returns the hypotenuse of a triangle with sides {@code x} and {@code y}
+     * - sqrt(<i>x</i><sup>2</sup>&nbsp;+<i>y</i><sup>2</sup>)<br/>
+     * avoiding intermediate overflow or underflow.
+     * @param x a value
+     * @param y a value
+     * @return sqrt(<i>x</i><sup>2</sup>&nbsp;+<i>y</i><sup>2</sup>)
+     */
+    public static double hypot(double x, double y) {
+        return hypot(x, y, accuracy);
+    }
+
+    /**
+     * Returns the hypotenuse of a triangle with sides {@code x} and {@code y}
+     * - sqrt(<i>x</i><sup>2</sup>&nbsp;+<i>y</i><sup>2</sup>)<br/>
+     * avoiding intermediate overflow or underflow.
+     * @param x a value
+     * @param y a value
+     * @param a {@link #FAST} (relative error within 1e-6) or
+     * {@link #ACCURATE} (2 ulp)
+     * @return sqrt(<i>x</i><sup>2</sup>&nbsp;+<i>y</i><sup>2</sup>)
+     */
+    public static double hypot(double x, double y, int a) {
+        if (Double.isInfinite(x) || Double.isInfinite(y)) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (x != x || y != y) {
+            return Double.NaN;
+        }
+        x = Math.abs(x);
+        y = Math.abs(y);
+        if (x < y) {
+            final double t = x;
+            x = y;
+            y = t;
+        }
+        if (a == FAST && x < HYPOT_SAFE_MAX && y > HYPOT_SAFE_MIN) {
+            return fastSqrt(x * x + y * y);
+        }
+        if (y == 0) {
+            return x;
+        }
+        final int ex = getExponent(x);
+        if (ex - getExponent(y) > 27) {
+            return x; // y is below half an ulp of x
+        }
+        // scale to around 1 so the squares neither overflow nor underflow
+        final double sx = scalb(x, -ex);
+        final double sy = scalb(y, -ex);
+        return scalb(Math.sqrt(sx * sx + sy * sy), ex);
+    }
+
+    /**
+     * Exponential function.
+     * @param x a double
+     * @return double e<sup>x</sup>
+     */
+    public static double exp(double x) {
+        return exp(x, accuracy);
+    }
+
+    /**
+     * Exponential function.
+     * @param x a double
+     * @param a {@link #FAST} (relative error within 1e-6) or
+     * {@link #ACCURATE} (2 ulp)
+     * @return double e<sup>x</sup>
+     */
+    public static double exp(double x, int a) {
+        if (x != x) {
+            return x;
+        }
+        if (x > EXP_MAX) {
+            return Double.POSITIVE_INFINITY;
+        }
+        if (x < EXP_MIN) {
+            return 0.0;
+        }
+        return a == FAST ? fastExp(x) : accurateExp(x);
+    }
+
+    /**
+     * Natural logarithm.
+     * @param x a double
+     * @return log(x)
+     */
+    public static double log(double x) {
+        return log(x, accuracy);
+    }
+
+    /**
+     * Natural logarithm.
+     * @param x a double
+     * @param a {@link #FAST} (within 1e-6) or {@link #ACCURATE} (2 ulp)
+     * @return log(x)
+     */
+    public static double log(double x, int a) {
+        if (x != x || x < 0) {
+            return Double.NaN;
+        }
+        if (x == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (x == Double.POSITIVE_INFINITY) {
+            return x;
+        }
+        int e = 0;
+        if (x < SAFE_MIN) {
+            x *= TWO_POWER_54;
+            e = -54;
+        }
+        final long bits = Double.doubleToLongBits(x);
+        e += (int) (bits >>> 52) - 1023;
+        final double m = Double.longBitsToDouble((bits & MANTISSA_MASK) | ONE_BITS);
+        if (a == FAST) {
+            return e * LN_2 + interpolate(LogTable.T, (m - 1.0) * TABLE_SIZE);
+        }
+        return accurateLog(m, e);
+    }
+
+    /**
+     * Two arguments arctangent, to full precision.
+     */
+    private static double accurateAtan2(double y, double x) {
+        if (x != x || y != y) {
+            return Double.NaN;
+        }
+
+        if (y == 0) {
+            final double result = x * y;
+            final double invx = 1d / x;
+            final double invy = 1d / y;
+
+            if (invx == 0) { // X is infinite
+                if (x > 0) {
+                    return y; // return +/- 0.0
+                } else {
+                    return copySign(Math.PI, y);
+                }
+            }
+
+            if (x < 0 || invx < 0) {
+                if (y < 0 || invy < 0) {
+                    return -Math.PI;
+                } else {
+                    return Math.PI;
+                }
+            } else {
+                return result;
+            }
+        }
+
+        // y cannot now be zero
+
+        if (y == Double.POSITIVE_INFINITY) {
+            if (x == Double.POSITIVE_INFINITY) {
+                return Math.PI * F_1_4;
+            }
+
+            if (x == Double.NEGATIVE_INFINITY) {
+                return Math.PI * F_3_4;
+            }
+
+            return Math.PI * F_1_2;
+        }
+
+        if (y == Double.NEGATIVE_INFINITY) {
+            if (x == Double.POSITIVE_INFINITY) {
+                return -Math.PI * F_1_4;
+            }
+
+            if (x == Double.NEGATIVE_INFINITY) {
+                return -Math.PI * F_3_4;
+            }
+
+            return -Math.PI * F_1_2;
+        }
+
+        if (x == Double.POSITIVE_INFINITY) {
+            return y > 0 ? 0d : -0d;
+        }
+
+        if (x == Double.NEGATIVE_INFINITY) {
+            return y > 0 ? Math.PI : -Math.PI;
+        }
+
+        // Neither y nor x can be infinite or NAN here
+
+        if (x == 0) {
+            return y > 0 ? Math.PI * F_1_2 : -Math.PI * F_1_2;
+        }
+
+        // Compute ratio r = y/x
+        final double r = y / x;
+        if (Double.isInfinite(r)) { // bypass calculations that can create NaN
+            return atan(r, 0, x < 0);
+        }
+
+        double ra = doubleHighPart(r);
+        double rb = r - ra;
+
+        // Split x
+        final double xa = doubleHighPart(x);
+        final double xb = x - xa;
+
+        rb += (y - ra * xa - ra * xb - rb * xa - rb * xb) / x;
+
+        final double temp = ra + rb;
+        rb = -(temp - ra - rb);
+        ra = temp;
+
+        if (ra == 0) { // Fix up the sign so atan works correctly
+            ra = copySign(0d, y);
+        }
+
+        return atan(ra, rb, x < 0);
+    }
+
+    /**
+     * e<sup>x</sup> for x in range: reduces to r = x - k ln 2 with |r| below
+     * ln(2)/2, then sums the series to 1/13!, past which terms are below
+     * 1e-18.
+     */
+    private static double accurateExp(double x) {
+        final int k = (int) Math.floor(x * LOG2_E + 0.5);
+        // k * LN_2_HI is exact, so hi carries no rounding error
+        final double hi = x - k * LN_2_HI;
+        final double lo = k * LN_2_LO;
+        final double r = hi - lo;
+
+        double p = EXP_COEF[EXP_COEF.length - 1];
+        for (int i = EXP_COEF.length - 2; i >= 0; i--) {
+            p = p * r + EXP_COEF[i];
+        }
+        // add the 1 last so it doesn't swamp the small terms
+        final double y = 1.0 + (r + r * r * p);
+        return scalb(y, k);
+    }
+
+    /**
+     * log(m * 2<sup>e</sup>) for m in [1, 2). Centers m on 1 and sums
+     * log((1+s)/(1-s)) = 2s + 2s<sup>3</sup>/3 + ... with s = f/(2+f),
+     * arranged as in fdlibm so the big terms add last.
+     */
+    private static double accurateLog(double m, int e) {
+        if (m > SQRT_2) {
+            m *= 0.5;
+            e++;
+        }
+        final double f = m - 1.0;
+        final double s = f / (2.0 + f);
+        final double z = s * s;
+        double r = LOG_COEF[LOG_COEF.length - 1];
+        for (int i = LOG_COEF.length - 2; i >= 0; i--) {
+            r = r * z + LOG_COEF[i];
+        }
+        r *= z;
+        final double hfsq = 0.5 * f * f;
+        return e * LN_2_HI - ((hfsq - (s * (hfsq + r) + e * LN_2_LO)) - f);
+    }
+
+    /**
+     * atan by table for 0 &lt;= x &lt;= 1, and pi/2 - atan(1/x) above.
+     */
+    private static double fastAtan(double x) {
+        if (x != x) {
+            return x;
+        }
+        final double ax = Math.abs(x);
+        double r;
+        if (ax <= 1.0) {
+            r = interpolate(AtanTable.T, ax * TABLE_SIZE);
+        } else {
+            r = Math.PI * F_1_2 - interpolate(AtanTable.T, TABLE_SIZE / ax);
+        }
+        return copySign(r, x);
+    }
+
+    /**
+     * atan2 by table on whichever of y/x and x/y is at most 1.
+     */
+    private static double fastAtan2(double y, double x) {
+        if (x != x || y != y) {
+            return Double.NaN;
+        }
+        if (x == 0 || y == 0 || Double.isInfinite(x) || Double.isInfinite(y)) {
+            return accurateAtan2(y, x); // all the signed-zero cases
+        }
+        final double ax = Math.abs(x);
+        final double ay = Math.abs(y);
+        double r;
+        if (ay <= ax) {
+            r = interpolate(AtanTable.T, ay / ax * TABLE_SIZE);
+        } else {
+            r = Math.PI * F_1_2 - interpolate(AtanTable.T, ax / ay * TABLE_SIZE);
+        }
+        if (x < 0) {
+            r = Math.PI - r;
+        }
+        return copySign(r, y);
+    }
+
+    /**
+     * sin(x + shift * pi/2) by a quarter-wave table; shift 1 gives cos.
+     */
+    private static double fastSin(double x, int shift) {
+        if (x != x || Double.isInfinite(x)) {
+            return Double.NaN;
+        }
+        if (x == 0 && shift == 0) {
+            return x; // keeps the sign of zero
+        }
+        final double ax = Math.abs(x);
+        if (ax > FAST_TRIG_MAX) {
+            return shift == 0 ? Math.sin(x) : Math.cos(x);
+        }
+        final int q = (int) (ax * (2 / Math.PI));
+        final double u = reduce(ax, q);
+        final double[] t = SinTable.T;
+        double r;
+        switch ((q + shift) & 3) {
+            case 0:
+                r = interpolate(t, u);
+                break;
+            case 1:
+                r = interpolate(t, TABLE_SIZE - u);
+                break;
+            case 2:
+                r = -interpolate(t, u);
+                break;
+            default:
+                r = -interpolate(t, TABLE_SIZE - u);
+                break;
+        }
+        return x < 0 ? -r : r;
+    }
+
+    /**
+     * tan as sin/cos, sharing one reduction.
+     */
+    private static double fastTan(double x) {
+        if (x != x || Double.isInfinite(x)) {
+            return Double.NaN;
+        }
+        if (x == 0) {
+            return x; // keeps the sign of zero
+        }
+        final double ax = Math.abs(x);
+        if (ax > FAST_TRIG_MAX) {
+            return Math.tan(x);
+        }
+        final int q = (int) (ax * (2 / Math.PI));
+        final double u = reduce(ax, q);
+        final double s = interpolate(SinTable.T, u);
+        final double c = interpolate(SinTable.T, TABLE_SIZE - u);
+        final double r = (q & 1) == 0 ? s / c : -c / s;
+        return x < 0 ? -r : r;
+    }
+
+    /**
+     * @return ax - q pi/2, in table units and clamped to the table
+     */
+    private static double reduce(double ax, int q) {
+        final double r = (ax - q * PI_2_HI) - q * PI_2_LO;
+        final double u = r * (TABLE_SIZE / (Math.PI * F_1_2));
+        if (u < 0) {
+            return 0;
+        }
+        return u > TABLE_SIZE ? TABLE_SIZE : u;
+    }
+
+    /**
+     * sqrt(m * 2<sup>e</sup>) = sqrt(m) * 2<sup>e/2</sup>, with e made even
+     * so m lands in [1, 4) for the table.
+     */
+    private static double fastSqrt(double x) {
+        if (x != x || x < 0) {
+            return Double.NaN;
+        }
+        if (x == 0 || x == Double.POSITIVE_INFINITY) {
+            return x;
+        }
+        int e = 0;
+        if (x < SAFE_MIN) {
+            x *= TWO_POWER_54;
+            e = -54;
+        }
+        final long bits = Double.doubleToLongBits(x);
+        e += (int) (bits >>> 52) - 1023;
+        double m = Double.longBitsToDouble((bits & MANTISSA_MASK) | ONE_BITS);
+        if ((e & 1) != 0) {
+            m *= 2;
+            e--;
+        }
+        return interpolate(SqrtTable.T, (m - 1.0) * (TABLE_SIZE / 3.0)) * powerOfTwo(e >> 1);
+    }
+
+    /**
+     * e<sup>x</sup> = 2<sup>k</sup> * 2<sup>f</sup>, 2<sup>f</sup> from
+     * the table.
+     */
+    private static double fastExp(double x) {
+        final double t = x * LOG2_E;
+        final int k = (int) Math.floor(t);
+        return scalb(interpolate(ExpTable.T, (t - k) * TABLE_SIZE), k);
+    }
+
+    /**
+     * Linear interpolation between table points.
+     * @param t table of TABLE_SIZE + 1 points
+     * @param u position in the table, 0 to TABLE_SIZE
+     */
+    private static double interpolate(double[] t, double u) {
+        int i = (int) u;
+        if (i >= TABLE_SIZE) {
+            i = TABLE_SIZE - 1;
+        }
+        final double a = t[i];
+        return a + (u - i) * (t[i + 1] - a);
+    }
+
+    /**
+     * Get the high order bits from the mantissa.
+     * Equivalent to adding and subtracting HEX_40000 but also works for very large numbers
+     *
+     * @param d the value to split
+     * @return the high order part of the mantissa
+     */
+    private static double doubleHighPart(double d) {
+        if (d > -SAFE_MIN && d < SAFE_MIN) {
+            return d; // These are un-normalised - don't try to convert
+        }
+        long xl = Double.doubleToLongBits(d);
+        xl &= MASK_30BITS; // Drop low order bits
+        return Double.longBitsToDouble(xl);
+    }
+
+    /**
+     * @return the unbiased exponent; -1023 for zero and subnormals
+     */
+    private static int getExponent(double d) {
+        return (int) ((Double.doubleToLongBits(d) >>> 52) & 0x7ff) - 1023;
+    }
+
+    /**
+     * @return 2<sup>k</sup> for k in [-1022, 1023]
+     */
+    private static double powerOfTwo(int k) {
+        return Double.longBitsToDouble(((long) (k + 1023)) << 52);
+    }
+
+    /**
+     * d * 2<sup>n</sup>. When the result is subnormal the exact part of
+     * the scaling is done first, so it is rounded only once.
+     */
+    private static double scalb(double d, int n) {
+        if (n > 1023) {
+            d *= powerOfTwo(1023);
+            n -= 1023;
+            if (n > 1023) {
+                d *= powerOfTwo(1023);
+                n -= 1023;
+                if (n > 1023) {
+                    n = 1023;
+                }
+            }
+        } else if (n < -1022) {
+            int k = n + 1022;
+            if (k < -1022) {
+                k = -1022;
+            }
+            d *= powerOfTwo(k);
+            n = -1022;
+        }
+        return d * powerOfTwo(n);
+    }
+
+    /**
+     * Computes a FAST table from the ACCURATE functions.
+     */
+    private static double[] computeTable(int id) {
+        final double[] t = new double[TABLE_SIZE + 1];
+        for (int i = 0; i <= TABLE_SIZE; i++) {
+            final double u = (double) i / TABLE_SIZE;
+            switch (id) {
+                case SIN_TABLE:
+                    t[i] = Math.sin(u * (Math.PI * F_1_2));
+                    break;
+                case ATAN_TABLE:
+                    t[i] = atan(u, 0.0, false);
+                    break;
+                case SQRT_TABLE:
+                    t[i] = Math.sqrt(1.0 + 3.0 * u);
+                    break;
+                case EXP_TABLE:
+                    t[i] = accurateExp(LN_2 * u);
+                    break;
+                case LOG_TABLE:
+                    t[i] = accurateLog(1.0 + u, 0);
+                    break;
+                default:
+                    throw new IllegalArgumentException("No FastMath table " + id);
+            }
+        }
+        return t;
+    }
+
+    /** sin over [0, pi/2], built on first use. */
+    private static class SinTable {
+        static final double[] T = computeTable(SIN_TABLE);
+    }
+
+    /** atan over [0, 1], built on first use. */
+    private static class AtanTable {
+        static final double[] T = computeTable(ATAN_TABLE);
+    }
+
+    /** sqrt over [1, 4], built on first use. */
+    private static class SqrtTable {
+        static final double[] T = computeTable(SQRT_TABLE);
+    }
+
+    /** 2<sup>x</sup> over [0, 1], built on first use. */
+    private static class ExpTable {
+        static final double[] T = computeTable(EXP_TABLE);
+    }
+
+    /** log over [1, 2], built on first use. */
+    private static class LogTable {
+        static final double[] T = computeTable(LOG_TABLE);
+    }
+}
@@ -0,0 +1,14 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.ascent.roborealm;
+
+/**
+ * Receives complete, delimiter-framed messages straight out of the
+ * reader's buffer. The bytes are only valid for the duration of the call;
+ * copy anything that needs to outlive it.
+ */
+public interface RealmFrameListener {
+    public void frameReceived(byte[] buf, int off, int len);
+}
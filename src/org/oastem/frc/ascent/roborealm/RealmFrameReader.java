@@ -0,0 +1,211 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.ascent.roborealm;
+
+import java.io.IOException;
+import java.io.InputStream;
+import org.oastem.frc.time.Clock;
+
+/**
+ * Reads RoboRealm replies off a socket stream and splits them into frames.
+ * <p>
+ * The reader blocks in bulk reads into a reusable buffer and assembles
+ * frames into a second fixed buffer, so nothing is allocated per message.
+ * A frame ends when the delimiter (by default {@code </response>}) has been
+ * seen, even if it is split across two reads. A frame longer than the frame
+ * buffer is dropped whole and the reader resynchronizes on the next
+ * delimiter instead of wrapping around and mixing two messages.
+ * </p>
+ */
+public class RealmFrameReader implements Runnable {
+    public static final String DEFAULT_DELIMITER = "</response>";
+    public static final int DEFAULT_READ_SIZE = 256;
+    public static final int DEFAULT_FRAME_SIZE = 1024;
+    private static final long RATE_WINDOW = 1000; // ms
+    
+    private final InputStream in;
+    private final RealmFrameListener listener;
+    private final byte[] delim;
+    private final int[] fail;
+    private final byte[] readBuf;
+    private final byte[] frame;
+    
+    private int framePos = 0;
+    private int matched = 0;
+    private boolean overflow = false;
+    
+    private volatile long bytes = 0;
+    private volatile long frames = 0;
+    private volatile long dropped = 0;
+    
+    private long windowStart = 0;
+    private long windowBytes = 0;
+    private long windowFrames = 0;
+    private volatile long lastWindowEnd = 0;
+    private volatile int bytesPerSec = 0;
+    private volatile int framesPerSec = 0;
+    
+    private volatile boolean stop = false;
+
+    public RealmFrameReader(InputStream in, RealmFrameListener listener) {
+        this(in, listener, DEFAULT_DELIMITER, DEFAULT_READ_SIZE, DEFAULT_FRAME_SIZE);
+    }
+
+    public RealmFrameReader(InputStream in, RealmFrameListener listener,
+            String delimiter, int readSize, int frameSize) {
+        if (delimiter == null || delimiter.length() == 0) {
+            throw new IllegalArgumentException("Delimiter must not be empty");
+        }
+        this.in = in;
+        this.listener = listener;
+        this.delim = delimiter.getBytes();
+        this.fail = buildFailTable(delim);
+        this.readBuf = new byte[readSize];
+        this.frame = new byte[frameSize];
+    }
+
+    /**
+     * Builds the KMP failure table so a partial delimiter match can fall
+     * back without re-reading bytes.
+     */
+    private static int[] buildFailTable(byte[] d) {
+        int[] f = new int[d.length];
+        int k = 0;
+        for (int i = 1; i < d.length; i++) {
+            while (k > 0 && d[i] != d[k]) {
+                k = f[k - 1];
+            }
+            if (d[i] == d[k]) {
+                k++;
+            }
+            f[i] = k;
+        }
+        return f;
+    }
+
+    public void run() {
+        Clock clock = Clock.getInstance();
+        windowStart = clock.millis();
+        try {
+            while (!stop) {
+                int n = in.read(readBuf, 0, readBuf.length);
+                if (n < 0) {
+                    break; // stream closed
+                }
+                feed(readBuf, 0, n);
+                roll(clock.millis());
+            }
+        } catch (IOException e) {
+            if (!stop) e.printStackTrace();
+        }
+    }
+
+    /**
+     * Pushes raw bytes through the framer. Called by the reader thread, but
+     * usable directly when the bytes come from somewhere other than a
+     * stream.
+     */
+    public void feed(byte[] b, int off, int len) {
+        bytes += len;
+        windowBytes += len;
+        
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            byte c = b[i];
+            
+            if (!overflow) {
+                if (framePos < frame.length) {
+                    frame[framePos++] = c;
+                } else {
+                    overflow = true;
+                }
+            }
+            
+            while (matched > 0 && c != delim[matched]) {
+                matched = fail[matched - 1];
+            }
+            if (c == delim[matched]) {
+                matched++;
+            }
+            
+            if (matched == delim.length) {
+                endFrame();
+            }
+        }
+    }
+
+    private void endFrame() {
+        if (overflow) {
+            dropped++;
+        } else {
+            // skip the padding/whitespace left between replies
+            int start = 0;
+            while (start < framePos && frame[start] <= ' ') {
+                start++;
+            }
+            if (start < framePos) {
+                frames++;
+                windowFrames++;
+                if (listener != null) {
+                    listener.frameReceived(frame, start, framePos - start);
+                }
+            }
+        }
+        framePos = 0;
+        matched = 0;
+        overflow = false;
+    }
+
+    private void roll(long now) {
+        long elapsed = now - windowStart;
+        if (elapsed >= RATE_WINDOW) {
+            bytesPerSec = (int) (windowBytes * 1000 / elapsed);
+            framesPerSec = (int) (windowFrames * 1000 / elapsed);
+            windowBytes = 0;
+            windowFrames = 0;
+            windowStart = now;
+            lastWindowEnd = now;
+        }
+    }
+    
+    public void stop() {
+        stop = true;
+    }
+
+    public long getBytesRead() {
+        return bytes;
+    }
+
+    public long getFramesRead() {
+        return frames;
+    }
+
+    /**
+     * @return Frames thrown away because they did not fit the frame buffer.
+     */
+    public long getFramesDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return Bytes per second over the last full second, or 0 if nothing
+     * has arrived for a while.
+     */
+    public int getBytesPerSecond() {
+        return isStale() ? 0 : bytesPerSec;
+    }
+
+    /**
+     * @return Frames per second over the last full second, or 0 if nothing
+     * has arrived for a while.
+     */
+    public int getFramesPerSecond() {
+        return isStale() ? 0 : framesPerSec;
+    }
+
+    private boolean isStale() {
+        return Clock.getInstance().millis() - lastWindowEnd > 2 * RATE_WINDOW;
+    }
+}
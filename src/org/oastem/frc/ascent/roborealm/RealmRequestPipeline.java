@@ -0,0 +1,281 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.ascent.roborealm;
+
+import java.io.IOException;
+import org.oastem.frc.time.Clock;
+
+/**
+ * Keeps several {@code get_variables} requests in flight at once so that
+ * vision updates come in at the camera frame rate instead of one per round
+ * trip.
+ * <p>
+ * RoboRealm answers requests on a connection in the order it got them, so
+ * each reply is matched to the oldest request still in flight. The
+ * pipeline sends a new request every {@code interval} ms as long as fewer
+ * than {@code depth} are outstanding, and records the round trip time of
+ * every reply. Attach it as the server's frame listener and hang the real
+ * consumer off {@link #setListener(RealmFrameListener)}; while that
+ * listener runs, {@link #getReplySequence()} and {@link #getReplySentAt()}
+ * say which request the frame answers.
+ * </p>
+ * <p>
+ * Requests given up on after the timeout are still owed a reply, and
+ * those replies come before any to later requests. The pipeline counts
+ * them and throws away that many frames before it matches again.
+ * </p>
+ */
+public class RealmRequestPipeline implements RealmFrameListener, Runnable {
+    public static final int DEFAULT_DEPTH = 3;
+    public static final int DEFAULT_INTERVAL = 33; // ms, ~30 fps
+    public static final int DEFAULT_TIMEOUT = 1000; // ms
+    
+    private final RealmServer server;
+    private final byte[] request;
+    private final int depth;
+    private final int interval;
+    private int timeout = DEFAULT_TIMEOUT;
+    
+    // in-flight ring, guarded by this
+    private final int[] seqs;
+    private final long[] sentAt;
+    private int head = 0;
+    private int size = 0;
+    private int nextSeq = 0;
+    // replies to expired requests still to come
+    private int owed = 0;
+    // every sequence number below this has been given up on
+    private int expiredBelow = 0;
+    
+    private RealmFrameListener listener;
+    private int replySeq = -1;
+    private long replySentAt = 0;
+    
+    private volatile long sent = 0;
+    private volatile long replies = 0;
+    private volatile long unmatched = 0;
+    private volatile long timeouts = 0;
+    private volatile long late = 0;
+    private volatile long lastRtt = 0;
+    private volatile long minRtt = Long.MAX_VALUE;
+    private volatile long maxRtt = 0;
+    private long rttSum = 0;
+    
+    private volatile boolean stop = false;
+
+    public RealmRequestPipeline(RealmServer server, String[] variables) {
+        this(server, variables, DEFAULT_DEPTH, DEFAULT_INTERVAL);
+    }
+
+    public RealmRequestPipeline(RealmServer server, String[] variables,
+            int depth, int interval) {
+        this.server = server;
+        this.depth = depth;
+        this.interval = interval;
+        this.seqs = new int[depth];
+        this.sentAt = new long[depth];
+        
+        StringBuffer sb = new StringBuffer("<request><get_variables>");
+        for (int i = 0; i < variables.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(variables[i]);
+        }
+        sb.append("</get_variables></request>");
+        this.request = sb.toString().getBytes();
+    }
+    
+    public void setListener(RealmFrameListener listener) {
+        this.listener = listener;
+    }
+    
+    /**
+     * @param timeout How long (ms) the oldest request may go unanswered
+     * before the pipeline gives up on everything in flight.
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Sends requests on a fixed schedule until stopped.
+     */
+    public void run() {
+        Clock clock = Clock.getInstance();
+        long next = clock.millis();
+        while (!stop) {
+            long now = clock.millis();
+            expire(now);
+            if (canSend()) {
+                try {
+                    send(now);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    break;
+                }
+            }
+            
+            next += interval;
+            long wait = next - clock.millis();
+            if (wait <= 0) {
+                next = clock.millis(); // fell behind, don't burst
+            } else {
+                clock.sleep(wait);
+            }
+        }
+    }
+    
+    public void stop() {
+        stop = true;
+    }
+
+    private synchronized boolean canSend() {
+        return size < depth;
+    }
+
+    private void send(long now) throws IOException {
+        int seq;
+        synchronized (this) {
+            int slot = (head + size) % depth;
+            seq = nextSeq++;
+            seqs[slot] = seq;
+            sentAt[slot] = now;
+            size++;
+        }
+        // the reply may beat this call back, so the slot is filled first
+        boolean written = false;
+        try {
+            server.write(request, 0, request.length);
+            written = true;
+        } finally {
+            if (!written) {
+                release(seq);
+            }
+        }
+        sent++;
+    }
+
+    /**
+     * Takes back the slot of a request whose write failed, so no reply is
+     * waited for. If the request already timed out, the reply it was owed
+     * is written off instead.
+     */
+    private synchronized void release(int seq) {
+        if (size > 0 && seqs[(head + size - 1) % depth] == seq) {
+            size--;
+        } else if (seq < expiredBelow && owed > 0) {
+            owed--;
+            timeouts--;
+        }
+    }
+
+    /**
+     * Gives up on everything in flight if the oldest request has timed out.
+     * Their replies are still owed and are thrown away as they come.
+     */
+    private synchronized void expire(long now) {
+        if (size > 0 && now - sentAt[head] > timeout) {
+            timeouts += size;
+            owed += size;
+            size = 0;
+            expiredBelow = nextSeq;
+        }
+    }
+
+    public void frameReceived(byte[] buf, int off, int len) {
+        long now = Clock.getInstance().millis();
+        synchronized (this) {
+            if (owed > 0) {
+                owed--;
+                late++;
+                return;
+            }
+            if (size == 0) {
+                unmatched++;
+                return;
+            }
+            replySeq = seqs[head];
+            replySentAt = sentAt[head];
+            head = (head + 1) % depth;
+            size--;
+        }
+        
+        long rtt = now - replySentAt;
+        lastRtt = rtt;
+        if (rtt < minRtt) minRtt = rtt;
+        if (rtt > maxRtt) maxRtt = rtt;
+        rttSum += rtt;
+        replies++;
+        
+        if (listener != null) {
+            listener.frameReceived(buf, off, len);
+        }
+    }
+    
+    /**
+     * @return The sequence number of the request the frame being delivered
+     * answers. Only meaningful inside the listener callback.
+     */
+    public int getReplySequence() {
+        return replySeq;
+    }
+    
+    /**
+     * @return When (ms) the request the frame being delivered answers was
+     * sent. Only meaningful inside the listener callback.
+     */
+    public long getReplySentAt() {
+        return replySentAt;
+    }
+    
+    public synchronized int getInFlight() {
+        return size;
+    }
+    
+    public long getSent() {
+        return sent;
+    }
+    
+    public long getReplies() {
+        return replies;
+    }
+    
+    /**
+     * @return Replies that arrived with no request in flight.
+     */
+    public long getUnmatched() {
+        return unmatched;
+    }
+    
+    /**
+     * @return Requests given up on after the timeout.
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+    
+    /**
+     * @return Replies to requests given up on, thrown away when they came.
+     */
+    public long getLate() {
+        return late;
+    }
+    
+    public long getLastRoundTrip() {
+        return lastRtt;
+    }
+    
+    public long getMinRoundTrip() {
+        return replies == 0 ? 0 : minRtt;
+    }
+    
+    public long getMaxRoundTrip() {
+        return maxRtt;
+    }
+    
+    public long getAverageRoundTrip() {
+        long n = replies;
+        return n == 0 ? 0 : rttSum / n;
+    }
+}
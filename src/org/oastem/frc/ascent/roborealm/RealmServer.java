@@ -12,6 +12,9 @@ import java.io.*;
 import javax.microedition.io.Connector;
 import javax.microedition.io.ServerSocketConnection;
 import javax.microedition.io.SocketConnection;
+import org.oastem.frc.metrics.Counter;
+import org.oastem.frc.metrics.LatencyHistogram;
+import org.oastem.frc.metrics.Metrics;
 
 
 /**
@@ -27,11 +30,19 @@ public class RealmServer {
     private int port = 6060;
     
     private InputStream in;
+    private OutputStream rawOut;
     private PrintStream out;
     
+    private String delimiter = RealmFrameReader.DEFAULT_DELIMITER;
+    
     private RealmListener rl;
+    private RealmFrameListener frameListener;
+    private RealmFrameReader frames;
     private Thread reader;
     
+    private LatencyHistogram frameTime = Metrics.histogram("realm.frame");
+    private Counter frameCount = Metrics.counter("realm.frames");
+    
     private RealmServer() {
         
     }
@@ -49,70 +60,78 @@ public class RealmServer {
         this.port = newPort;
     }
     
+    public void setDelimiter(String delimiter) {
+        this.delimiter = delimiter;
+    }
+    
     public void connect() throws IOException {
         sc = (SocketConnection) Connector.open("socket://" + host + ":" + port);
         sc.setSocketOption(SocketConnection.LINGER, 5);
         
         in = sc.openInputStream();
         
-        this.reader = new Thread(new Runnable() {
+        this.frames = new RealmFrameReader(in, new RealmFrameListener() {
 
-            public void run() {
-                startReadInternal();
+            public void frameReceived(byte[] buf, int off, int len) {
+                dispatch(buf, off, len);
             }
-        });
+        }, delimiter, RealmFrameReader.DEFAULT_READ_SIZE,
+                RealmFrameReader.DEFAULT_FRAME_SIZE);
+        this.reader = new Thread(frames);
         this.reader.start();
         
-        out = new PrintStream(sc.openOutputStream());
+        rawOut = sc.openOutputStream();
+        out = new PrintStream(rawOut);
     }
     
-    private void startReadInternal() {
-        try {
-            String resp = "";
-            
-            int bufLen = 1024;
-            char[] buf = new char[bufLen];
-            int pos = 0;
-            
-            int consecZero = 0;
-            final int ZERO_THRESHOLD = 10;
-            
-            InputStreamReader isr = new InputStreamReader(this.in);
-            
-            while (true) {
-                int temp = 0;
-                if (isr.ready()) temp = isr.read();
-                if (pos == 0 && temp == 0) continue;
-                
-                if (temp != 0) consecZero = 0;
-                else consecZero++;
-                
-                if (consecZero >= ZERO_THRESHOLD) {
-                    resp = new String(buf).trim();
-                    if (!resp.equals("")) {
-                        this.rl.serverRespond(resp);
-                        buf = new char[bufLen];
-                        pos = 0;
-                    }
-                }
-                
-                buf[pos] = (char)temp;
-                
-                pos = ++pos % bufLen;
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    private void dispatch(byte[] buf, int off, int len) {
+        long t = frameTime.start();
+        if (this.frameListener != null) {
+            this.frameListener.frameReceived(buf, off, len);
+        }
+        if (this.rl != null) {
+            this.rl.serverRespond(new String(buf, off, len));
         }
+        frameCount.inc();
+        frameTime.stop(t);
     }
     
-    public void write(String data) {
+    public synchronized void write(String data) {
         out.print(data);
     }
     
+    /**
+     * Writes a prebuilt request and flushes it onto the socket.
+     */
+    public synchronized void write(byte[] data, int off, int len) throws IOException {
+        rawOut.write(data, off, len);
+        rawOut.flush();
+    }
+    
     public void attachListener(RealmListener rl) {
         this.rl = rl;
     }
     
+    /**
+     * Attaches a listener that gets each frame as raw bytes, without the
+     * String that {@link RealmListener} needs.
+     */
+    public void attachFrameListener(RealmFrameListener fl) {
+        this.frameListener = fl;
+    }
+    
+    public int getBytesPerSecond() {
+        return frames == null ? 0 : frames.getBytesPerSecond();
+    }
+    
+    public int getFramesPerSecond() {
+        return frames == null ? 0 : frames.getFramesPerSecond();
+    }
+    
+    public long getFramesDropped() {
+        return frames == null ? 0 : frames.getFramesDropped();
+    }
+    
 }
     
     
@@ -0,0 +1,135 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.ascent.roborealm;
+
+import org.oastem.frc.pid.TargetSource;
+import org.oastem.frc.time.Clock;
+
+/**
+ * Decodes the target variables out of each RoboRealm frame and pushes them
+ * into a {@link TargetSource} and/or a {@link TargetFrameListener}. Attach
+ * it with {@link RealmServer#attachFrameListener(RealmFrameListener)}, or
+ * behind a {@link RealmRequestPipeline} so capture times can account for
+ * the round trip.
+ * <p>
+ * The capture time is estimated as the receive time less half the round
+ * trip (when the reply was produced) less the camera latency (exposure and
+ * RoboRealm processing, see {@link #setCameraLatency(long)}).
+ * </p>
+ * <p>
+ * A frame is passed on only if every variable in it parsed. If any is
+ * missing or malformed, the whole frame is rejected, so consumers never
+ * see one value from this frame next to another left over from the last.
+ * </p>
+ */
+public class RealmTargetFeed implements RealmFrameListener {
+    // Slot order matches the target source indices used in RobotMain.
+    public static final int WIDTH = 0;
+    public static final int ANGLE = 1;
+    public static final int HEIGHT = 2;
+    public static final int BLOB_COUNT = 3;
+    public static final int SLOTS = 4;
+    private static final int ALL = (1 << SLOTS) - 1;
+    
+    private RealmVariableParser parser = new RealmVariableParser();
+    private double[] slots = new double[SLOTS];
+    private TargetSource target;
+    private TargetFrameListener frameListener;
+    private TargetFramePool pool = new TargetFramePool(8);
+    private RealmRequestPipeline pipeline;
+    private long cameraLatency = 0;
+    private int sequence = 0;
+    private long updates = 0;
+    private long rejected = 0;
+
+    public RealmTargetFeed(TargetSource target) {
+        this.target = target;
+        parser.addVariable("WIDTH");
+        parser.addVariable("ANGLE");
+        parser.addVariable("HEIGHT");
+        parser.addVariable("BLOB_COUNT");
+    }
+
+    public void frameReceived(byte[] buf, int off, int len) {
+        int found = parser.parse(buf, off, len, slots);
+        if ((found & (1 << BLOB_COUNT)) != 0 && slots[BLOB_COUNT] == 0) {
+            // no target in view; keep the last good one
+            return;
+        }
+        if (found != ALL) {
+            // slots that didn't parse still hold the last frame's values
+            rejected++;
+            return;
+        }
+        updates++;
+        if (target != null) {
+            target.update(slots);
+        }
+        if (frameListener != null) {
+            publish();
+        }
+    }
+    
+    private void publish() {
+        TargetFrame f = pool.acquire();
+        if (f == null) {
+            return; // every frame is held; counted by the pool
+        }
+        long now = Clock.getInstance().micros() * 1000;
+        long transport = cameraLatency;
+        if (pipeline != null) {
+            transport += pipeline.getLastRoundTrip() * 1000000 / 2;
+            f.sequence = pipeline.getReplySequence();
+        } else {
+            f.sequence = sequence++;
+        }
+        f.width = slots[WIDTH];
+        f.angle = slots[ANGLE];
+        f.height = slots[HEIGHT];
+        f.blobCount = (int) slots[BLOB_COUNT];
+        f.receiveNanos = now;
+        f.captureNanos = now - transport;
+        try {
+            frameListener.targetReceived(f);
+        } finally {
+            f.release();
+        }
+    }
+    
+    public void setFrameListener(TargetFrameListener l) {
+        this.frameListener = l;
+    }
+    
+    /**
+     * Uses the pipeline's round trip for capture time estimates and its
+     * sequence numbers for frames.
+     */
+    public void setPipeline(RealmRequestPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+    
+    /**
+     * @param nanos Time from exposure to RoboRealm having the result.
+     */
+    public void setCameraLatency(long nanos) {
+        this.cameraLatency = nanos;
+    }
+    
+    public TargetFramePool getPool() {
+        return pool;
+    }
+    
+    public long getUpdates() {
+        return updates;
+    }
+    
+    /**
+     * @return Frames missing any of the target variables, or with one
+     * that didn't parse.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+}
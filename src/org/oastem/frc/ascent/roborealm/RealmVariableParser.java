@@ -0,0 +1,204 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.ascent.roborealm;
+
+/**
+ * Pull parser for RoboRealm API replies of the form
+ * {@code <response><WIDTH>12</WIDTH><ANGLE>-3.5</ANGLE></response>}.
+ * <p>
+ * Variables are registered up front and each one gets a slot. Parsing walks
+ * the raw frame bytes and writes every registered variable it finds
+ * straight into the caller's {@code double[]}, so no Strings are built.
+ * Tag names are matched without regard to case, and tags that were not
+ * registered are skipped.
+ * </p>
+ */
+public class RealmVariableParser {
+    public static final int MAX_VARIABLES = 32;
+    
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    
+    private byte[][] names = new byte[MAX_VARIABLES][];
+    private int count = 0;
+    // scratch for parseNumber; the parser is meant for a single reader thread
+    private double number;
+
+    /**
+     * Registers a variable.
+     *
+     * @param name The RoboRealm variable name.
+     * @return The slot the variable is decoded into.
+     */
+    public int addVariable(String name) {
+        if (count >= MAX_VARIABLES) {
+            throw new IndexOutOfBoundsException("Reached the limit of " +
+                    MAX_VARIABLES + " variables!");
+        }
+        names[count] = name.toUpperCase().getBytes();
+        return count++;
+    }
+    
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Decodes one reply.
+     *
+     * @param buf The frame bytes.
+     * @param off Where the frame starts.
+     * @param len The frame length.
+     * @param slots Output values, indexed by slot.
+     * @return A bit mask of the slots that were written.
+     */
+    public int parse(byte[] buf, int off, int len, double[] slots) {
+        int end = off + len;
+        int found = 0;
+        int i = off;
+        
+        while (i < end) {
+            if (buf[i++] != '<') {
+                continue;
+            }
+            int nameStart = i;
+            while (i < end && buf[i] != '>' && buf[i] > ' ') {
+                i++;
+            }
+            int nameEnd = i;
+            while (i < end && buf[i] != '>') {
+                i++; // skip attributes
+            }
+            if (i >= end) {
+                break;
+            }
+            i++; // past '>'
+            
+            if (buf[nameStart] == '/') {
+                continue;
+            }
+            int slot = lookup(buf, nameStart, nameEnd - nameStart);
+            if (slot < 0) {
+                continue;
+            }
+            int valueStart = i;
+            while (i < end && buf[i] != '<') {
+                i++;
+            }
+            if (parseNumber(buf, valueStart, i)) {
+                slots[slot] = number;
+                found |= 1 << slot;
+            }
+        }
+        return found;
+    }
+
+    private int lookup(byte[] buf, int off, int len) {
+        for (int s = 0; s < count; s++) {
+            byte[] n = names[s];
+            if (n.length != len) {
+                continue;
+            }
+            int j = 0;
+            while (j < len && upper(buf[off + j]) == n[j]) {
+                j++;
+            }
+            if (j == len) {
+                return s;
+            }
+        }
+        return -1;
+    }
+
+    private static byte upper(byte c) {
+        return (c >= 'a' && c <= 'z') ? (byte) (c - ('a' - 'A')) : c;
+    }
+
+    /**
+     * Parses a plain decimal number ({@code -12.5}, {@code 3e-2}) between
+     * {@code start} and {@code end} into {@link #number}.
+     *
+     * @return false if the text is not a number.
+     */
+    private boolean parseNumber(byte[] buf, int start, int end) {
+        int i = start;
+        while (i < end && buf[i] <= ' ') i++;
+        while (end > i && buf[end - 1] <= ' ') end--;
+        if (i >= end) {
+            return false;
+        }
+        
+        boolean negative = false;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = buf[i] == '-';
+            i++;
+        }
+        
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        
+        for (; i < end; i++) {
+            byte c = buf[i];
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) digits++;
+                    if (seenPoint) scale--;
+                } else if (!seenPoint) {
+                    scale++; // precision is gone, keep the magnitude
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) {
+            return false;
+        }
+        
+        if (i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+            i++;
+            boolean expNegative = false;
+            if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+                expNegative = buf[i] == '-';
+                i++;
+            }
+            int exp = 0;
+            boolean seenExp = false;
+            for (; i < end && buf[i] >= '0' && buf[i] <= '9'; i++) {
+                seenExp = true;
+                if (exp < 10000) exp = exp * 10 + (buf[i] - '0');
+            }
+            if (!seenExp) {
+                return false;
+            }
+            scale += expNegative ? -exp : exp;
+        }
+        if (i != end) {
+            return false;
+        }
+        
+        double value = mantissa;
+        while (scale > 22) {
+            value *= POW10[22];
+            scale -= 22;
+        }
+        while (scale < -22) {
+            value /= POW10[22];
+            scale += 22;
+        }
+        value = scale < 0 ? value / POW10[-scale] : value * POW10[scale];
+        
+        number = negative ? -value : value;
+        return true;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.ascent.roborealm;
+
+/**
+ * One decoded vision target, with the time the camera saw it and the time
+ * the robot got it. Times are FPGA time in nanoseconds.
+ * <p>
+ * Frames belong to a {@link TargetFramePool} and are reused. A listener
+ * may read a frame freely while its callback runs. To keep it longer, call
+ * {@link #retain()} inside the callback and {@link #release()} when done;
+ * after the last release the frame can be handed out again and its fields
+ * will change under you.
+ * </p>
+ */
+public class TargetFrame {
+    public double width;
+    public double angle;
+    public double height;
+    public int blobCount;
+    public int sequence;
+    public long captureNanos;
+    public long receiveNanos;
+    
+    private final TargetFramePool pool;
+    int refs = 0;
+
+    TargetFrame(TargetFramePool pool) {
+        this.pool = pool;
+    }
+    
+    /**
+     * @return How long before it reached the robot the frame was captured.
+     */
+    public long getTransportNanos() {
+        return receiveNanos - captureNanos;
+    }
+    
+    public void retain() {
+        pool.retain(this);
+    }
+    
+    public void release() {
+        pool.release(this);
+    }
+}
@@ -0,0 +1,13 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.ascent.roborealm;
+
+/**
+ * Receives decoded vision targets. See {@link TargetFrame} for how long a
+ * frame may be held.
+ */
+public interface TargetFrameListener {
+    public void targetReceived(TargetFrame frame);
+}
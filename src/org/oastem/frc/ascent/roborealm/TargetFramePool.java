@@ -0,0 +1,68 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.ascent.roborealm;
+
+/**
+ * A fixed set of {@link TargetFrame}s handed out in turn, so a steady
+ * vision stream makes no garbage.
+ */
+public class TargetFramePool {
+    private final TargetFrame[] frames;
+    private int next = 0;
+    private long exhausted = 0;
+
+    public TargetFramePool(int size) {
+        frames = new TargetFrame[size];
+        for (int i = 0; i < size; i++) {
+            frames[i] = new TargetFrame(this);
+        }
+    }
+
+    /**
+     * @return A free frame holding one reference, or null if consumers are
+     * holding on to every frame.
+     */
+    public synchronized TargetFrame acquire() {
+        for (int i = 0; i < frames.length; i++) {
+            TargetFrame f = frames[next];
+            next = (next + 1) % frames.length;
+            if (f.refs == 0) {
+                f.refs = 1;
+                return f;
+            }
+        }
+        exhausted++;
+        return null;
+    }
+
+    synchronized void retain(TargetFrame f) {
+        if (f.refs <= 0) {
+            throw new IllegalStateException("Frame was already released");
+        }
+        f.refs++;
+    }
+
+    synchronized void release(TargetFrame f) {
+        if (f.refs <= 0) {
+            throw new IllegalStateException("Frame was already released");
+        }
+        f.refs--;
+    }
+
+    public synchronized int getFree() {
+        int free = 0;
+        for (int i = 0; i < frames.length; i++) {
+            if (frames[i].refs == 0) free++;
+        }
+        return free;
+    }
+
+    /**
+     * @return How many times a frame was asked for with none free.
+     */
+    public synchronized long getExhausted() {
+        return exhausted;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.ascent.shooting;
+
+import org.oastem.frc.control.DriveSystem;
+import org.oastem.frc.metrics.Counter;
+import org.oastem.frc.metrics.LatencyHistogram;
+import org.oastem.frc.metrics.Metrics;
+
+/**
+ * The feed arm as a state machine, stepped once per loop tick.
+ * <p>
+ * Parking runs the arm forward until the fire limit switch opens.
+ * Releasing runs it back for a fixed time. Firing parks, waits for the
+ * frisbee to settle, releases, and asks for a shooter boost while the
+ * wheel recovers. Every wait is a deadline checked in {@link #step}, so
+ * nothing here ever blocks the caller, and parking gives up after a
+ * timeout instead of spinning forever on a stuck switch.
+ * </p>
+ */
+public class FeedController {
+    public static final int IDLE = 0;
+    public static final int PARKING = 1;
+    public static final int SETTLING = 2;
+    public static final int RELEASING = 3;
+    
+    private static final double PARK_POWER = 0.3;
+    private static final double RELEASE_POWER = -0.3;
+    private static final long PARK_TIMEOUT = 1500; // ms
+    private static final long SETTLE_TIME = 300;
+    private static final long RELEASE_TIME = 140;
+    private static final long BOOST_TIME = 1000;
+    
+    private final DriveSystem drive;
+    private final int arm;
+    
+    private int state = IDLE;
+    private long stateStart = 0;
+    private boolean firing = false;
+    private boolean parked = false;
+    private boolean lastLimit = false;
+    private boolean limitKnown = false;
+    private long boostUntil = 0;
+    
+    private long timeouts = 0;
+    private long limitEdges = 0;
+    private long shots = 0;
+    
+    private LatencyHistogram stepTime = Metrics.histogram("feed.step");
+    private Counter timeoutCount = Metrics.counter("feed.timeouts");
+    private Counter shotCount = Metrics.counter("feed.shots");
+
+    /**
+     * @param drive Where the arm Victor lives.
+     * @param arm The arm's PWM port.
+     */
+    public FeedController(DriveSystem drive, int arm) {
+        this.drive = drive;
+        this.arm = arm;
+    }
+
+    /**
+     * Starts a full shot: park, settle, release, boost.
+     *
+     * @return false if the arm is already busy.
+     */
+    public boolean fire(long now) {
+        if (state != IDLE) {
+            return false;
+        }
+        firing = true;
+        enter(PARKING, now);
+        return true;
+    }
+
+    public boolean park(long now) {
+        if (state != IDLE) {
+            return false;
+        }
+        firing = false;
+        enter(PARKING, now);
+        return true;
+    }
+
+    public boolean release(long now) {
+        if (state != IDLE) {
+            return false;
+        }
+        firing = false;
+        enter(RELEASING, now);
+        return true;
+    }
+
+    /**
+     * Stops the arm where it is.
+     */
+    public void abort() {
+        firing = false;
+        drive.set(arm, 0.0);
+        state = IDLE;
+    }
+
+    /**
+     * Advances the machine.
+     *
+     * @param now The current time in ms.
+     * @param limit The fire limit switch; true while the arm is not parked.
+     */
+    public void step(long now, boolean limit) {
+        long t = stepTime.start();
+        boolean opened = limitKnown && lastLimit && !limit;
+        if (limitKnown && limit != lastLimit) {
+            limitEdges++;
+        }
+        lastLimit = limit;
+        limitKnown = true;
+        
+        long inState = now - stateStart;
+        switch (state) {
+            case PARKING:
+                if (opened || !limit) {
+                    parked = true;
+                    drive.set(arm, 0.0);
+                    if (firing) {
+                        enter(SETTLING, now);
+                    } else {
+                        state = IDLE;
+                    }
+                } else if (inState > PARK_TIMEOUT) {
+                    timeouts++;
+                    timeoutCount.inc();
+                    abort();
+                }
+                break;
+            case SETTLING:
+                if (inState >= SETTLE_TIME) {
+                    enter(RELEASING, now);
+                }
+                break;
+            case RELEASING:
+                if (inState >= RELEASE_TIME) {
+                    drive.set(arm, 0.0);
+                    parked = false;
+                    if (firing) {
+                        shots++;
+                        shotCount.inc();
+                        boostUntil = now + BOOST_TIME;
+                        firing = false;
+                    }
+                    state = IDLE;
+                }
+                break;
+            default:
+                break;
+        }
+        stepTime.stop(t);
+    }
+
+    private void enter(int newState, long now) {
+        state = newState;
+        stateStart = now;
+        if (newState == PARKING) {
+            drive.set(arm, PARK_POWER);
+        } else if (newState == RELEASING) {
+            drive.set(arm, RELEASE_POWER);
+        }
+    }
+    
+    public int getState() {
+        return state;
+    }
+    
+    public boolean isBusy() {
+        return state != IDLE;
+    }
+    
+    public boolean isParked() {
+        return parked;
+    }
+
+    /**
+     * @return Whether the shooter should run a little hot to make up for
+     * the frisbee that just went through.
+     */
+    public boolean isBoosting(long now) {
+        return now < boostUntil;
+    }
+    
+    /**
+     * @return Parks that gave up waiting for the limit switch.
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+    
+    public long getLimitEdges() {
+        return limitEdges;
+    }
+    
+    public long getShots() {
+        return shots;
+    }
+}
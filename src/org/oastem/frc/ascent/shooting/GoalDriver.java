@@ -4,35 +4,75 @@
  */
 package org.oastem.frc.ascent.shooting;
 
+import org.oastem.frc.ascent.roborealm.TargetFrame;
+import org.oastem.frc.control.DriveLease;
 import org.oastem.frc.control.DriveSystem;
+import org.oastem.frc.log.Log;
+import org.oastem.frc.log.LogRing;
+import org.oastem.frc.metrics.LatencyHistogram;
+import org.oastem.frc.metrics.Metrics;
+import org.oastem.frc.sched.PeriodicExecutor;
+import org.oastem.frc.sched.PeriodicTask;
+import org.oastem.frc.time.Clock;
 
 /**
  *
  * @author STEM
  */
-public class GoalDriver implements Runnable {
+public class GoalDriver implements Runnable, PeriodicTask {
+    private static final int NO_UPDATES = Log.define("GoalDriver: No updates received for (s)");
 
-    private double angle = 0.0;
-    private double width = 0.0;
-    
-    private double lastAngle = 0.0;
-    private double lastWidth = 0.0;
+    /**
+     * What the vision side last reported, with the frame before it. Never
+     * changed once built; update() publishes a new one through
+     * {@link #target} and the control loop reads it once per tick, so
+     * angle, width, time and heading always come from the same update.
+     */
+    private static class Target {
+        final double angle;
+        final double width;
+        final double lastAngle;
+        final double lastWidth;
+        final long lastUpdate; // ms
+        final double heading;
+
+        Target(double angle, double width, double lastAngle, double lastWidth,
+                long lastUpdate, double heading) {
+            this.angle = angle;
+            this.width = width;
+            this.lastAngle = lastAngle;
+            this.lastWidth = lastWidth;
+            this.lastUpdate = lastUpdate;
+            this.heading = heading;
+        }
+    }
+
+    private volatile Target target =
+            new Target(0.0, 0.0, 0.0, 0.0, Clock.getInstance().millis(), 0.0);
     
     private double left = 0.0;
     private double right = 0.0;
-    private double lastLeft = 0.0;
-    private double lastRight = 0.0;
     
-    private long lastUpdate = System.currentTimeMillis();
     private final double DRIVE_SPEED = 0.33; // base driving speed
     private final int DRIVE_DELAY = 50;
     private final double GOAL_DISTANCE = 100;
     private final double ANGLE_DRIVE_RATIO = 0.33;
     private final double ZONE = 0.2; // for angle
     private final double GOAL_THRESHOLD = 5; // distance threshold
-    private final double SPEED_THRESHOLD = 0.15; // threshold to average out motor speeds
-    private boolean canShoot = false;
-    private boolean stop = false;
+    private final int AIM_DELAY = 10; // loop period when aiming off the gyro
+    private final int LEASE_TIMEOUT = 200; // drive goes back to the driver
+    private volatile boolean canShoot = false;
+    private volatile boolean stop = false;
+    private boolean stale = false;
+    private DriveLease drive;
+    private PeriodicExecutor exec;
+    private LogRing log;
+    private LatencyHistogram tickTime = Metrics.histogram("goal.tick");
+    
+    // Latency compensation: the vision angle is turned into an absolute
+    // heading using the heading at capture time, and the gyro closes the
+    // loop on that heading between frames.
+    private HeadingHistory history;
 
     public GoalDriver() {
     }
@@ -41,83 +81,150 @@ public class GoalDriver implements Runnable {
         update(angle, width);
     }
 
+    /**
+     * Takes a new angle and width. Must only be called from one thread.
+     */
     public void update(double angle, double width) {
-        lastAngle = this.angle;
-        lastWidth = this.width;
-        this.angle = angle;
-        this.width = width;
-        lastUpdate = System.currentTimeMillis();
+        Target last = target;
+        double heading = history != null ? history.getLatest() + angle : last.heading;
+        target = new Target(angle, width, last.angle, last.width,
+                Clock.getInstance().millis(), heading);
+    }
+
+    /**
+     * Takes a timestamped frame. Freshness is counted from when the camera
+     * saw the target, not from when the frame got here. The frame is not
+     * kept, so this is safe to call straight from a frame callback. Must
+     * only be called from one thread.
+     */
+    public void update(TargetFrame frame) {
+        Target last = target;
+        long now = Clock.getInstance().micros();
+        long age = now * 1000 - frame.captureNanos;
+        double heading = history != null
+                ? history.headingAt(frame.captureNanos) + frame.angle : last.heading;
+        target = new Target(frame.angle, frame.width, last.angle, last.width,
+                now / 1000 - age / 1000000, heading);
+    }
+    
+    /**
+     * Aims off the gyro history instead of the raw vision angle. Vision
+     * angles must then be in degrees, positive to the right, matching the
+     * heading source.
+     */
+    public void setHeadingHistory(HeadingHistory history) {
+        this.history = history;
+    }
+    
+    /**
+     * @return The angle left to turn, corrected for how far the robot has
+     * turned since the frame was captured.
+     */
+    public double getCorrectedAngle() {
+        return correctedAngle(target);
+    }
+
+    private double correctedAngle(Target t) {
+        if (history == null) {
+            return t.angle;
+        }
+        return t.heading - history.getLatest();
     }
     
     public boolean canShoot() {
         return canShoot;
     }
     
+    public double getLeft() {
+        return left;
+    }
+    
+    public double getRight() {
+        return right;
+    }
+    
     public void stop() {
         stop = true;
+        if (exec != null) {
+            exec.stop();
+        }
+    }
+    
+    public PeriodicExecutor getExecutor() {
+        return exec;
     }
 
+    /**
+     * Runs the control loop on the calling thread at a fixed rate until
+     * stopped.
+     */
     public void run() {
-        DriveSystem drive = DriveSystem.getInstance();
-        //double ok = 0.0;
-        while (true) {
-            if (stop) { 
-                break;
-            } else if (System.currentTimeMillis() - lastUpdate > 5000) {
-                long time = (System.currentTimeMillis() - lastUpdate)/1000;
-                System.out.println("GoalDriver: No updates received for " + time + " seconds!");
-                drive.tankDrive(0.0, 0.0);
-            } else {
-                double avgWidth = (lastWidth + width)/2;
-                double avgAngle = (lastAngle + angle)/2;
-                
-                System.out.println("Angler PID Output: " + avgAngle);
-                lastLeft = left;
-                lastRight = right;
-                
-                left = 0.0;
-                right = 0.0;
-                
-                double delta = avgWidth - GOAL_DISTANCE;
-                System.out.println("Driver PID width: " + avgWidth);
-                if (delta > GOAL_THRESHOLD) {
-                    // too close, back up
-                    left = -DRIVE_SPEED * delta/50;
-                    right = -DRIVE_SPEED * delta/50;
-                } else if (delta < -GOAL_THRESHOLD) {
-                    // too far, go forward
-                    left = DRIVE_SPEED * delta/50;
-                    right = DRIVE_SPEED * delta/50;
-                }
-                
-                if (avgAngle < -ZONE) {
-                    left += avgAngle * ANGLE_DRIVE_RATIO;
-                    right -= avgAngle * ANGLE_DRIVE_RATIO;
-                } else if (avgAngle > ZONE) {
-                    left += avgAngle * ANGLE_DRIVE_RATIO;
-                    right -= avgAngle * ANGLE_DRIVE_RATIO;
-                }
-                
-                // slowly rev up the motor instead of slamming it
-                double dLeft = left - lastLeft;
-                double dRight = right - lastRight;
-                if (Math.abs(dLeft) < SPEED_THRESHOLD) {
-                    left = (lastLeft + left)/2;
-                }
-                
-                if (Math.abs(dRight) < SPEED_THRESHOLD) {
-                    right = (lastRight + right)/2;
-                }
-                
-                canShoot = (Math.abs(left) < ZONE && Math.abs(right) < ZONE);
-                
-                drive.tankDrive(left, right);
-            }
+        exec = new PeriodicExecutor(this, history != null ? AIM_DELAY : DRIVE_DELAY);
+        if (!stop) {
+            drive = DriveSystem.getInstance().lease(DriveSystem.AUTO_AIM, "goal", LEASE_TIMEOUT);
+            log = Log.ring("goal", 32);
             try {
-                Thread.sleep(DRIVE_DELAY);
-            } catch (Exception e) {
-            
+                exec.run();
+            } finally {
+                drive.close();
+                log.close();
+            }
+        }
+    }
+
+    public void tick() {
+        long t = tickTime.start();
+        Target seen = target;
+        if (stop) {
+            exec.stop();
+        } else if (Clock.getInstance().millis() - seen.lastUpdate > 5000) {
+            if (!stale) {
+                stale = true;
+                log.log(Log.WARN, NO_UPDATES, 5);
             }
+            drive.release();
+        } else {
+            stale = false;
+            double avgWidth = (seen.lastWidth + seen.width)/2;
+            double avgAngle = history != null ? correctedAngle(seen)
+                    : (seen.lastAngle + seen.angle)/2;
+            
+            compute(avgAngle, avgWidth);
+            drive.tankDrive(left, right);
+        }
+        tickTime.stop(t);
+    }
+
+    /**
+     * One control step: works out the drive outputs from the target angle
+     * and width, and whether the robot is lined up to shoot. Touches no
+     * hardware and no clock, so the same inputs from the same state always
+     * give the same outputs.
+     */
+    public void compute(double avgAngle, double avgWidth) {
+        left = 0.0;
+        right = 0.0;
+        
+        double delta = avgWidth - GOAL_DISTANCE;
+        if (delta > GOAL_THRESHOLD) {
+            // too close, back up
+            left = -DRIVE_SPEED * delta/50;
+            right = -DRIVE_SPEED * delta/50;
+        } else if (delta < -GOAL_THRESHOLD) {
+            // too far, go forward
+            left = DRIVE_SPEED * delta/50;
+            right = DRIVE_SPEED * delta/50;
+        }
+        
+        if (avgAngle < -ZONE) {
+            left += avgAngle * ANGLE_DRIVE_RATIO;
+            right -= avgAngle * ANGLE_DRIVE_RATIO;
+        } else if (avgAngle > ZONE) {
+            left += avgAngle * ANGLE_DRIVE_RATIO;
+            right -= avgAngle * ANGLE_DRIVE_RATIO;
         }
+        
+        // DriveSystem's drive filters ease the motors to these
+        canShoot = (Math.abs(left) < ZONE && Math.abs(right) < ZONE);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,120 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.ascent.shooting;
+
+import edu.wpi.first.wpilibj.PIDSource;
+import org.oastem.frc.time.Clock;
+
+/**
+ * A ring of timestamped robot headings, sampled at a high rate from a gyro
+ * (or anything else that gives a heading in degrees as a
+ * {@link PIDSource}).
+ * <p>
+ * Vision frames arrive 60-150 ms after the camera saw the goal. Looking up
+ * the heading at the frame's capture time lets the aiming code turn the
+ * camera angle into an absolute target heading, which stays right no
+ * matter how far the robot has turned since.
+ * </p>
+ */
+public class HeadingHistory implements Runnable {
+    public static final int DEFAULT_SIZE = 128;
+    public static final int DEFAULT_PERIOD = 5; // ms, 200 Hz
+    
+    private final long[] times;
+    private final double[] headings;
+    private int head = 0; // next slot to write
+    private int count = 0;
+    
+    private PIDSource source;
+    private int period;
+    private volatile boolean stop = false;
+
+    public HeadingHistory(PIDSource source) {
+        this(source, DEFAULT_SIZE, DEFAULT_PERIOD);
+    }
+
+    public HeadingHistory(PIDSource source, int size, int period) {
+        this.source = source;
+        this.period = period;
+        times = new long[size];
+        headings = new double[size];
+    }
+
+    /**
+     * Samples the source every period until stopped.
+     */
+    public void run() {
+        Clock clock = Clock.getInstance();
+        long next = clock.millis();
+        while (!stop) {
+            record(clock.micros() * 1000, source.pidGet());
+            next += period;
+            long wait = next - clock.millis();
+            if (wait <= 0) {
+                next = clock.millis();
+            } else {
+                clock.sleep(wait);
+            }
+        }
+    }
+    
+    public void stop() {
+        stop = true;
+    }
+
+    public synchronized void record(long nanos, double heading) {
+        times[head] = nanos;
+        headings[head] = heading;
+        head = (head + 1) % times.length;
+        if (count < times.length) count++;
+    }
+
+    public synchronized double getLatest() {
+        if (count == 0) {
+            return 0.0;
+        }
+        return headings[(head - 1 + times.length) % times.length];
+    }
+
+    /**
+     * Looks up the heading at a past time, interpolating between samples.
+     * Times newer than the newest sample give the newest heading; times
+     * older than the buffer give the oldest one it still has.
+     */
+    public synchronized double headingAt(long nanos) {
+        if (count == 0) {
+            return 0.0;
+        }
+        int n = times.length;
+        int newer = (head - 1 + n) % n;
+        if (nanos >= times[newer]) {
+            return headings[newer];
+        }
+        for (int i = 1; i < count; i++) {
+            int older = (newer - 1 + n) % n;
+            if (times[older] <= nanos) {
+                long span = times[newer] - times[older];
+                if (span <= 0) {
+                    return headings[older];
+                }
+                double t = (double) (nanos - times[older]) / span;
+                return headings[older] + (headings[newer] - headings[older]) * t;
+            }
+            newer = older;
+        }
+        return headings[newer];
+    }
+    
+    /**
+     * @return How far back (ns) the buffer reaches.
+     */
+    public synchronized long getSpan() {
+        if (count < 2) {
+            return 0;
+        }
+        int n = times.length;
+        return times[(head - 1 + n) % n] - times[(head - count + n) % n];
+    }
+}
@@ -6,57 +6,80 @@ package org.oastem.frc.ascent.shooting;
 
 import edu.wpi.first.wpilibj.PIDOutput;
 import org.oastem.frc.pid.PIDGainOutput;
+import org.oastem.frc.pid.TargetSnapshot;
+import org.oastem.frc.sched.PeriodicExecutor;
+import org.oastem.frc.sched.PeriodicTask;
 
 /**
+ * Drives a set of outputs from shared target data. Every attached output
+ * gets written in the same tick, on one thread, at a fixed rate. Outputs
+ * can be attached and detached while it runs.
  *
  * @author STEM
  */
-public class ThreadedShooter {
-    private double[] vars;
-    private Runnable[] runners; 
-    private int instances;
-    private int curInst = 0;
-    private Thread[] thrs;
+public class ThreadedShooter implements PeriodicTask {
+    private TargetSnapshot vars;
+    private PIDOutput[] outputs;
+    private int[] indices;
+    private PeriodicExecutor exec;
     private final int THREAD_DELAY = 100;
-    private boolean stop = false;
     
     public ThreadedShooter(double[] data, int inst) {
-        runners = new Runnable[inst];
-        thrs = new Thread[inst];
-        instances = inst;
+        vars = new TargetSnapshot(data.length);
+        outputs = new PIDOutput[inst];
+        indices = new int[inst];
+        exec = new PeriodicExecutor(this, THREAD_DELAY);
         update(data);
     }
     
+    /**
+     * Publishes new target data to the outputs. Only one thread may call
+     * this.
+     */
     public void update(double[] data) {
-        vars = data;
-    }
-    
-    public void attach(final int index, final PIDOutput out) {
-        runners[curInst++] = new Runnable() {
-            public void run() {
-                while(true) {
-                    if (stop) {
-                        break;
-                    }
-                    out.pidWrite(vars[index]);
-                    try {
-                        Thread.sleep(THREAD_DELAY);
-                    } catch (Exception e) {
-                        
-                    }
-                }
+        vars.write(data);
+    }
+    
+    /**
+     * Connects an output to one of the target values.
+     */
+    public synchronized void attach(final int index, final PIDOutput out) {
+        for (int i = 0; i < outputs.length; i++) {
+            if (outputs[i] == null) {
+                indices[i] = index;
+                outputs[i] = out;
+                return;
             }
-        };
+        }
+        throw new IndexOutOfBoundsException("Reached the limit of " +
+                outputs.length + " outputs!");
     }
     
-    public void run() {
-        for (int i = 0; i < instances; i++) {
-            thrs[i] = new Thread(runners[i]);
-            thrs[i].start();
+    public synchronized void detach(PIDOutput out) {
+        for (int i = 0; i < outputs.length; i++) {
+            if (outputs[i] == out) {
+                outputs[i] = null;
+            }
+        }
+    }
+    
+    public synchronized void tick() {
+        for (int i = 0; i < outputs.length; i++) {
+            if (outputs[i] != null) {
+                outputs[i].pidWrite(vars.get(indices[i]));
+            }
         }
     }
     
+    public void run() {
+        exec.start();
+    }
+    
     public void stop() {
-        stop = true;
+        exec.stop();
+    }
+    
+    public PeriodicExecutor getExecutor() {
+        return exec;
     }
 }
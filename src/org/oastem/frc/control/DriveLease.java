@@ -0,0 +1,145 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.control;
+
+import org.oastem.frc.time.Clock;
+
+/**
+ * A claim on the drive for one source of commands, from
+ * {@link DriveSystem#lease(int, String, int)}. Each tick the drive runs
+ * the latest command of the highest priority lease that is live, that is
+ * written to within its timeout and not released.
+ * <p>
+ * Writing never blocks and takes no lock: each command is a new immutable
+ * {@link Command} published through one volatile field, the way
+ * {@link org.oastem.frc.pid.TargetSnapshot} publishes its frames, and the
+ * drive's flusher picks it up from there. A lease belongs to one thread;
+ * only that thread may write to it.
+ * </p>
+ */
+public class DriveLease {
+    /**
+     * One command: the mode and the two values that go with it.
+     */
+    static class Command {
+        final int mode; // tank or arcade
+        final double a;
+        final double b;
+        final int version;
+
+        Command(int mode, double a, double b, int version) {
+            this.mode = mode;
+            this.a = a;
+            this.b = b;
+            this.version = version;
+        }
+    }
+
+    private final DriveSystem system;
+    private final int priority;
+    private final String name;
+    private final long timeout; // us
+
+    private volatile Command latest = new Command(DriveSystem.TANK, 0.0, 0.0, 0);
+    // when the lease lapses; 0 once released
+    private volatile long expires = 0;
+    private volatile long renewed = 0;
+    private volatile boolean closed = false;
+
+    DriveLease(DriveSystem system, int priority, String name, int timeout) {
+        this.system = system;
+        this.priority = priority;
+        this.name = name;
+        this.timeout = timeout * 1000L;
+    }
+
+    public void tankDrive(double left, double right) {
+        publish(DriveSystem.TANK, left, right);
+    }
+
+    public void arcadeDrive(double forward, double turn) {
+        publish(DriveSystem.ARCADE, forward, turn);
+    }
+
+    /**
+     * Holds the drive still. The lease stays live, so lower priorities
+     * stay locked out; {@link #release()} hands the drive back instead.
+     */
+    public void stop() {
+        publish(DriveSystem.TANK, 0.0, 0.0);
+    }
+
+    /**
+     * Gives up the drive until the next command.
+     */
+    public void release() {
+        expires = 0;
+    }
+
+    /**
+     * Gives up the drive for good, freeing the lease's slot; later
+     * commands are ignored.
+     */
+    public void close() {
+        closed = true;
+        expires = 0;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return Whether this lease's commands are what the drive ran last
+     * tick.
+     */
+    public boolean isOwner() {
+        return system.getOwner() == this;
+    }
+
+    public boolean isLive(long now) {
+        return now < expires;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return How many commands have been written.
+     */
+    public int getVersion() {
+        return latest.version;
+    }
+
+    /**
+     * @return When the lease was last written, in {@link Clock} micros.
+     */
+    long getRenewed() {
+        return renewed;
+    }
+
+    /**
+     * @return The latest command; never changes once read.
+     */
+    Command getCommand() {
+        return latest;
+    }
+
+    private void publish(int m, double va, double vb) {
+        if (closed) {
+            return;
+        }
+        latest = new Command(m, va, vb, latest.version + 1);
+
+        long now = Clock.getInstance().micros();
+        renewed = now;
+        expires = now + timeout;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.control;
+
+/**
+ * The joystick-to-motor math the drive code runs every tick. Kept apart
+ * from RobotMain so it can be benchmarked and reused without a robot.
+ */
+public class DriveMath {
+    /** Stick travel ignored around center. */
+    public static final double ZONE = 0.04;
+    
+    private DriveMath() {
+    }
+
+    /**
+     * Maps the throttle (+1 at the bottom, -1 at the top) to a drive scale
+     * from 0 to 1.
+     */
+    public static double scaleZ(double rawZ) {
+        return 0.5 - 0.5 * rawZ;
+    }
+
+    /**
+     * Clamps to [-1, 1].
+     */
+    public static double correct(double val) {
+        if (val > 1.0) {
+            return 1.0;
+        }
+        if (val < -1.0) {
+            return -1.0;
+        }
+        return val;
+    }
+
+    /**
+     * Single-stick arcade mixing into tank outputs: forward goes to both
+     * sides, turn is added to one and taken from the other. Stick values
+     * inside {@link #ZONE} count as zero.
+     *
+     * @param x Stick X (turn).
+     * @param y Stick Y (forward is negative).
+     * @param scale From {@link #scaleZ(double)}.
+     * @param out Gets left in [0] and right in [1].
+     */
+    public static void arcade(double x, double y, double scale, double[] out) {
+        double leftMove = 0.0;
+        double rightMove = 0.0;
+
+        if (Math.abs(y) > ZONE) {
+            leftMove = y;
+            rightMove = y;
+        }
+
+        if (Math.abs(x) > ZONE) {
+            leftMove = correct(leftMove + x);
+            rightMove = correct(rightMove - x);
+        }
+
+        out[0] = leftMove * scale * -1;
+        out[1] = rightMove * scale * -1;
+    }
+
+    /**
+     * Tank drive: one stick per side. Stick values inside {@link #ZONE}
+     * count as zero.
+     *
+     * @param l Left stick Y (forward is negative).
+     * @param r Right stick Y.
+     * @param scale From {@link #scaleZ(double)}.
+     * @param out Gets left in [0] and right in [1].
+     */
+    public static void tank(double l, double r, double scale, double[] out) {
+        out[0] = deadband(l) * scale * -1;
+        out[1] = deadband(r) * scale * -1;
+    }
+
+    /**
+     * Curvature drive: the turn stick sets how sharply to curve rather
+     * than how fast to spin, so the robot turns more the faster it goes.
+     * With quick turn the turn stick is added as is, to spin in place.
+     * If either side comes out past full power both are scaled back
+     * together, so the curve keeps its shape.
+     *
+     * @param throttle Stick Y (forward is negative).
+     * @param curve Stick X.
+     * @param quickTurn Turn without moving forward.
+     * @param scale From {@link #scaleZ(double)}.
+     * @param out Gets left in [0] and right in [1].
+     */
+    public static void curvature(double throttle, double curve, boolean quickTurn,
+            double scale, double[] out) {
+        double move = deadband(throttle);
+        double turn = deadband(curve);
+        if (!quickTurn) {
+            turn *= Math.abs(move);
+        }
+        double left = move + turn;
+        double right = move - turn;
+
+        double max = Math.max(Math.abs(left), Math.abs(right));
+        if (max > 1.0) {
+            left /= max;
+            right /= max;
+        }
+
+        out[0] = left * scale * -1;
+        out[1] = right * scale * -1;
+    }
+
+    /**
+     * @return 0 inside {@link #ZONE}, otherwise the value.
+     */
+    public static double deadband(double val) {
+        return Math.abs(val) > ZONE ? val : 0.0;
+    }
+
+    /**
+     * The expo response curve, a blend of linear and cubic that gives
+     * finer control near center and the same full power.
+     *
+     * @param val The stick value, -1 to 1.
+     * @param expo 0 is linear, 1 is cubic.
+     */
+    public static double expo(double val, double expo) {
+        return (1.0 - expo) * val + expo * val * val * val;
+    }
+}
@@ -8,76 +8,534 @@ import edu.wpi.first.wpilibj.Joystick;
 import edu.wpi.first.wpilibj.RobotDrive;
 import edu.wpi.first.wpilibj.Victor;
 import java.util.Hashtable;
+import org.oastem.frc.log.Log;
+import org.oastem.frc.log.LogRing;
+import org.oastem.frc.time.Clock;
 
 /**
+ * Every motor command goes through here. Each Victor port and each
+ * RobotDrive is a channel, and a background flusher thread is the only
+ * thing that writes to the hardware: every 20 ms it takes each channel's
+ * latest command and writes it out, skipping any that are the same as the
+ * last one written.
+ * <p>
+ * Setting a channel takes no lock. {@link #set} publishes an immutable
+ * command through a volatile field per channel, and the drives' commands
+ * come from {@link DriveLease}s the same way; the flusher holds the lock
+ * while it writes, but only setup calls ever wait on it. While batching
+ * (see {@link #setBatching(boolean)}) the flusher takes the Victors'
+ * commands as of the control loop's last {@link #flush()}, so a tick's
+ * commands go out together and each channel is written at most once per
+ * pass. If the loop stops flushing for a period, the flusher goes back to
+ * the latest commands.
+ * </p>
+ * <p>
+ * A channel can have {@link OutputFilter}s (slew limits, ramps and so on)
+ * between the command and the hardware. A channel whose filtered output
+ * hasn't caught up with its command is stepped again each pass until it
+ * has, however rarely it is commanded.
+ * </p>
+ * <p>
+ * The drives take their commands from leases, one per source, so the
+ * driver and auto-aim can both be running without fighting over the
+ * motors. Each pass, the drive runs the latest command of the highest
+ * priority live lease, and stops if none is live, so a lease that lapses
+ * or is released loses the drive within a pass. {@link #tankDrive} and
+ * {@link #arcadeDrive} write to a built-in {@link #DRIVER} lease.
+ * </p>
+ * <p>
+ * A channel whose filter or output throws is logged and counted, and the
+ * flusher carries on with the rest.
+ * </p>
+ * <p>
+ * Skipping unchanged writes relies on the outputs holding their value,
+ * which they do with motor safety off. With it on, drive writes always go
+ * out so they keep feeding the watchdog.
+ * </p>
  *
  * @author KTOmega
  */
 public class DriveSystem {
+    /** Victor ports, and so the channels they use. */
+    public static final int PORTS = 12;
+    /** Channel of the main drive. */
+    public static final int DRIVE = PORTS;
+    /** Channel of the secondary drive. */
+    public static final int SECONDARY_DRIVE = PORTS + 1;
+    /** Number of channels. */
+    public static final int CHANNELS = PORTS + 2;
+
+    /** Lease priority of the operator's sticks, the lowest. */
+    public static final int DRIVER = 0;
+    /** Lease priority of automatic aiming. */
+    public static final int AUTO_AIM = 1;
+    /** Most leases open at once. */
+    public static final int MAX_LEASES = 8;
+
+    // what a channel was last told to do
+    private static final int NONE = 0;
+    private static final int SET = 1;
+    static final int TANK = 2;
+    static final int ARCADE = 3;
+    // longest step a filter is given, so a command after a quiet spell
+    // isn't let through in one jump
+    private static final long MAX_FILTER_STEP = 20000; // us
+    // how often the flusher runs
+    private static final long FLUSH_PERIOD = 20; // ms
+    // how long tankDrive and arcadeDrive commands last
+    private static final int DRIVER_TIMEOUT = 250; // ms
+    private static final int OUTPUT_FAILED = Log.define("Drive output failed, channel/failures:");
+
     private static DriveSystem instance;
     private RobotDrive drive;
     private Victor[] raw;
     private boolean hasSecondary = false;
     private RobotDrive drive2;
-    
+    private boolean safety = false;
+    private volatile boolean batching = false;
+    private volatile boolean resend = false;
+    // when the control loop last flushed
+    private volatile long lastFlush = 0;
+
+    // the Victors' latest commands, and those as of the last flush; the
+    // only fields the control path writes
+    private Slot[] slots = new Slot[PORTS];
+
+    // the rest belongs to the flusher, and is only touched with the lock
+    // held: the command each channel took last, what it stages from it,
+    // and what was last written
+    private DriveLease.Command[] taken = new DriveLease.Command[PORTS];
+    private int[] stagedMode = new int[CHANNELS];
+    private double[] stagedA = new double[CHANNELS];
+    private double[] stagedB = new double[CHANNELS];
+    private boolean[] dirty = new boolean[CHANNELS];
+    private int[] sentMode = new int[CHANNELS];
+    private double[] sentA = new double[CHANNELS];
+    private double[] sentB = new double[CHANNELS];
+    private long[] issued = new long[CHANNELS];
+    private long[] suppressed = new long[CHANNELS];
+
+    // output filters, for the first and second value of each channel
+    private OutputFilter[] filterA = new OutputFilter[CHANNELS];
+    private OutputFilter[] filterB = new OutputFilter[CHANNELS];
+    private boolean[] settling = new boolean[CHANNELS];
+    private long[] lastFiltered = new long[CHANNELS];
+
+    // open leases; slots are only ever replaced, so they can be read
+    // without the lock
+    private DriveLease[] leases = new DriveLease[MAX_LEASES];
+    private volatile int leaseCount = 0;
+    private DriveLease driver;
+    private volatile DriveLease owner;
+    // the owner's command last staged, -1 to stage it again regardless
+    private int ownerVersion = 0;
+    private long handoffs = 0;
+
+    private LogRing log = Log.ring("drive", 16);
+    private volatile int failures = 0;
+
+    /**
+     * A Victor's commands, handed from whoever sets it to the flusher.
+     */
+    private static class Slot {
+        volatile DriveLease.Command latest;
+        volatile DriveLease.Command flushed;
+    }
+
     private DriveSystem() {
-        raw = new Victor[12];
+        raw = new Victor[PORTS];
+        for (int c = 0; c < PORTS; c++) {
+            slots[c] = new Slot();
+        }
+        driver = lease(DRIVER, "driver", DRIVER_TIMEOUT);
+        startFlusher();
     }
-    
+
     public static DriveSystem getInstance() {
         if (instance == null) {
             instance = new DriveSystem();
         }
-        
+
         return instance;
     }
-    
+
     public void initializeDrive(int l, int r) {
-        drive = new RobotDrive(l, r);
+        setDrive(new RobotDrive(l, r));
     }
-    
-    public void setDrive(RobotDrive rd) {
+
+    public synchronized void setDrive(RobotDrive rd) {
         drive = rd;
+        forget(DRIVE);
     }
-    
+
     public void initializeSecondaryDrive(int l2, int r2) {
-        drive2 = new RobotDrive(l2, r2);
-        hasSecondary = true;
+        setSecondaryDriver(new RobotDrive(l2, r2));
     }
-    
-    public void setSecondaryDriver(RobotDrive rd) {
+
+    public synchronized void setSecondaryDriver(RobotDrive rd) {
         drive2 = rd;
         hasSecondary = true;
+        forget(SECONDARY_DRIVE);
     }
-    
+
+    /**
+     * Drives as the {@link #DRIVER}; the command lapses after a quarter
+     * second unless repeated.
+     */
     public void arcadeDrive(double forward, double turn) {
-        drive.arcadeDrive(forward, turn);
-        if (hasSecondary) drive2.arcadeDrive(forward, turn);
+        driver.arcadeDrive(forward, turn);
     }
-    
+
+    /**
+     * Drives as the {@link #DRIVER}; the command lapses after a quarter
+     * second unless repeated.
+     */
     public void tankDrive(double x, double y) {
-        drive.tankDrive(x, y);
-        if (hasSecondary) drive2.tankDrive(x, y);
+        driver.tankDrive(x, y);
+    }
+
+    /**
+     * Opens a lease on the drives. Do this once per source, when it is set
+     * up, and close it when the source is done; each lease belongs to the
+     * thread that writes to it.
+     *
+     * @param priority {@link #DRIVER} or {@link #AUTO_AIM}; higher wins.
+     * Between leases of the same priority the latest command wins.
+     * @param name For debugging.
+     * @param timeout How long a command holds the drive, in ms, before the
+     * lease lapses to the next source down.
+     */
+    public synchronized DriveLease lease(int priority, String name, int timeout) {
+        DriveLease l = new DriveLease(this, priority, name, timeout);
+        int n = leaseCount;
+        for (int i = 0; i < n; i++) {
+            if (leases[i].isClosed()) {
+                leases[i] = l;
+                return l;
+            }
+        }
+        if (n == MAX_LEASES) {
+            throw new IndexOutOfBoundsException("Reached the limit of " +
+                    MAX_LEASES + " drive leases");
+        }
+        leases[n] = l;
+        leaseCount = n + 1;
+        return l;
+    }
+
+    /**
+     * @return The lease the drives ran last pass, or null if none was
+     * live.
+     */
+    public DriveLease getOwner() {
+        return owner;
+    }
+
+    /**
+     * @return How many times the drives have changed hands.
+     */
+    public synchronized long getHandoffs() {
+        return handoffs;
     }
-    
-    public void addVictor(int port) {
+
+    public synchronized void addVictor(int port) {
         raw[port] = new Victor(port);
+        forget(port);
     }
-    
+
+    /**
+     * Commands a Victor. Takes no lock; the flusher writes it out. Each
+     * Victor should be set from one thread at a time.
+     */
     public void set(int vic, double power) {
-        raw[vic].set(power);
+        Slot s = slots[vic];
+        DriveLease.Command last = s.latest;
+        s.latest = new DriveLease.Command(SET, power, 0.0,
+                last != null ? last.version + 1 : 1);
     }
-    
+
+    /**
+     * @return What the Victor is putting out, which lags {@link #set} until
+     * the flusher's next pass.
+     */
     public double getPwm(int vic) {
         return raw[vic].get();
     }
-    
+
     public Victor getVictor(int vic) {
         return raw[vic];
     }
-    
-    public void setSafety(boolean b){
-        drive.setSafetyEnabled(false);
-        if (hasSecondary) drive2.setSafetyEnabled(false);
+
+    public synchronized void setSafety(boolean b){
+        safety = b;
+        drive.setSafetyEnabled(b);
+        if (hasSecondary) drive2.setSafetyEnabled(b);
+    }
+
+    /**
+     * Adds a filter to a Victor's output. Filters run in the order they
+     * were added.
+     *
+     * @param channel The Victor's port.
+     */
+    public synchronized void addFilter(int channel, OutputFilter f) {
+        filterA[channel] = filterA[channel] == null ? f : filterA[channel].then(f);
+    }
+
+    /**
+     * Adds filters to a drive's two outputs (left and right in tank
+     * drive, forward and turn in arcade). Each side needs its own
+     * instance.
+     *
+     * @param channel {@link #DRIVE} or {@link #SECONDARY_DRIVE}.
+     */
+    public synchronized void addFilter(int channel, OutputFilter a, OutputFilter b) {
+        addFilter(channel, a);
+        filterB[channel] = filterB[channel] == null ? b : filterB[channel].then(b);
+    }
+
+    /**
+     * @param b True to have the flusher take the Victors' commands as of
+     * each {@link #flush()}; false to have it take the latest.
+     */
+    public void setBatching(boolean b) {
+        flush();
+        batching = b;
+    }
+
+    public boolean isBatching() {
+        return batching;
+    }
+
+    /**
+     * Hands every Victor's latest command to the flusher. The control loop
+     * calls this once per tick while batching. Takes no lock.
+     */
+    public void flush() {
+        for (int c = 0; c < PORTS; c++) {
+            Slot s = slots[c];
+            s.flushed = s.latest;
+        }
+        lastFlush = Clock.getInstance().micros();
+    }
+
+    /**
+     * Has the flusher forget what every channel was last sent, so the next
+     * command on each goes out even if it repeats. For the start of a
+     * mode, when the outputs may have been reset underneath us.
+     */
+    public void resend() {
+        resend = true;
+    }
+
+    /**
+     * @return Commands on the channel that reached the hardware.
+     */
+    public synchronized long getIssued(int channel) {
+        return issued[channel];
+    }
+
+    /**
+     * @return Commands on the channel that didn't, because they repeated
+     * the last write or were replaced before the flusher took them.
+     */
+    public synchronized long getSuppressed(int channel) {
+        return suppressed[channel];
+    }
+
+    /**
+     * @return How many times a channel's filter or output has thrown.
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    public synchronized void resetCounters() {
+        for (int c = 0; c < CHANNELS; c++) {
+            issued[c] = suppressed[c] = 0;
+        }
+    }
+
+    private void startFlusher() {
+        Thread flusher = new Thread(new Runnable() {
+            public void run() {
+                Clock clock = Clock.getInstance();
+                while (true) {
+                    clock.sleep(FLUSH_PERIOD);
+                    pass();
+                }
+            }
+        });
+        flusher.start();
+    }
+
+    /**
+     * The flusher's pass: takes each Victor's command, picks the drives'
+     * owner, then writes every channel that has a new command or is still
+     * settling. A channel that throws is tried again next pass.
+     */
+    private synchronized void pass() {
+        long now = Clock.getInstance().micros();
+        if (resend) {
+            resend = false;
+            for (int c = 0; c < CHANNELS; c++) {
+                sentMode[c] = NONE;
+            }
+            ownerVersion = -1;
+        }
+        // while the loop keeps flushing, only what it flushed goes out
+        boolean held = batching && now - lastFlush <= FLUSH_PERIOD * 1000;
+        for (int c = 0; c < PORTS; c++) {
+            take(c, held ? slots[c].flushed : slots[c].latest);
+        }
+        try {
+            arbitrate(now);
+        } catch (RuntimeException e) {
+            ownerVersion = -1; // arbitrate again next pass
+            failed(DRIVE);
+        }
+        for (int c = 0; c < CHANNELS; c++) {
+            if (dirty[c] || settling[c]) {
+                try {
+                    write(c, now);
+                } catch (RuntimeException e) {
+                    dirty[c] = true; // try it again next pass
+                    failed(c);
+                }
+            }
+        }
+    }
+
+    private void failed(int c) {
+        failures++;
+        log.log(Log.ERROR, OUTPUT_FAILED, c, failures);
+    }
+
+    /**
+     * Stages a Victor's command if it is one the flusher hasn't taken
+     * yet, counting any it never saw.
+     */
+    private void take(int c, DriveLease.Command cmd) {
+        DriveLease.Command last = taken[c];
+        if (cmd == null || cmd == last || raw[c] == null) {
+            return;
+        }
+        if (last != null && cmd.version > last.version + 1) {
+            suppressed[c] += cmd.version - last.version - 1;
+        }
+        taken[c] = cmd;
+        stage(c, cmd.mode, cmd.a, cmd.b);
+    }
+
+    /**
+     * Stages the command of the highest priority live lease on the drives,
+     * or a stop if there is none, unless it was already staged.
+     */
+    private void arbitrate(long now) {
+        DriveLease best = null;
+        int n = leaseCount;
+        for (int i = 0; i < n; i++) {
+            DriveLease l = leases[i];
+            if (l.isLive(now) && (best == null
+                    || l.getPriority() > best.getPriority()
+                    || (l.getPriority() == best.getPriority()
+                        && l.getRenewed() > best.getRenewed()))) {
+                best = l;
+            }
+        }
+
+        DriveLease.Command cmd = best != null ? best.getCommand() : null;
+        int version = cmd != null ? cmd.version : 0;
+        if (best == owner && version == ownerVersion) {
+            return;
+        }
+        if (best != owner) {
+            handoffs++;
+            owner = best;
+        }
+        ownerVersion = version;
+
+        int mode = cmd != null ? cmd.mode : TANK;
+        double a = cmd != null ? cmd.a : 0.0;
+        double b = cmd != null ? cmd.b : 0.0;
+        if (drive != null) {
+            stage(DRIVE, mode, a, b);
+        }
+        if (hasSecondary) {
+            stage(SECONDARY_DRIVE, mode, a, b);
+        }
+    }
+
+    private void stage(int c, int mode, double a, double b) {
+        if (dirty[c]) {
+            suppressed[c]++; // replaced before it went out
+        }
+        stagedMode[c] = mode;
+        stagedA[c] = a;
+        stagedB[c] = b;
+        dirty[c] = true;
+    }
+
+    private void write(int c, long now) {
+        boolean command = dirty[c];
+        dirty[c] = false;
+        int mode = stagedMode[c];
+        double a = stagedA[c];
+        double b = stagedB[c];
+        if (filterA[c] != null || filterB[c] != null) {
+            long dt = now - lastFiltered[c];
+            if (dt == 0) {
+                settling[c] = true; // no time to move in, step it next pass
+                return;
+            }
+            if (dt > MAX_FILTER_STEP || dt < 0) {
+                dt = MAX_FILTER_STEP;
+            }
+            lastFiltered[c] = now;
+            a = filterA[c] != null ? filterA[c].apply(a, dt) : a;
+            b = filterB[c] != null ? filterB[c].apply(b, dt) : b;
+            // still moving, and not there yet
+            settling[c] = (a != sentA[c] || b != sentB[c])
+                    && (a != stagedA[c] || b != stagedB[c]);
+        }
+        if (mode == sentMode[c] && a == sentA[c] && b == sentB[c]
+                && !(safety && c >= PORTS)) {
+            if (command) {
+                suppressed[c]++;
+            }
+            return;
+        }
+
+        if (c < PORTS) {
+            raw[c].set(a);
+        } else {
+            RobotDrive rd = c == DRIVE ? drive : drive2;
+            if (mode == TANK) {
+                rd.tankDrive(a, b);
+            } else {
+                rd.arcadeDrive(a, b);
+            }
+        }
+        sentMode[c] = mode;
+        sentA[c] = a;
+        sentB[c] = b;
+        issued[c]++;
+    }
+
+    /**
+     * The channel's hardware is new, so the next command goes out
+     * whatever it is.
+     */
+    private void forget(int c) {
+        sentMode[c] = NONE;
+        dirty[c] = false;
+        settling[c] = false;
+        if (filterA[c] != null) filterA[c].resetAll(0.0);
+        if (filterB[c] != null) filterB[c].resetAll(0.0);
+        if (c >= PORTS) {
+            ownerVersion = -1;
+        } else {
+            taken[c] = null;
+        }
     }
 }
@@ -0,0 +1,155 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.control;
+
+/**
+ * One step between what a motor is told and what it gets, attached to a
+ * {@link DriveSystem} channel. Filters chain with {@link #then}; each
+ * keeps its own state, so one instance belongs to one output. They are
+ * built once and allocate nothing when run.
+ * <p>
+ * The stock filters come from {@link #slew(double)},
+ * {@link #ramp(double)}, {@link #deadband(double)} and
+ * {@link #scale(double)}; subclass for anything else.
+ * </p>
+ */
+public abstract class OutputFilter {
+    private OutputFilter next;
+
+    /**
+     * @param v The value coming in.
+     * @param dt Microseconds since the filter last ran.
+     * @return The value going out.
+     */
+    protected abstract double step(double v, long dt);
+
+    /**
+     * Sets what the filter thinks the output currently is. Filters with
+     * no state ignore it.
+     */
+    protected void reset(double v) {
+    }
+
+    /**
+     * Appends a filter to the end of this chain.
+     *
+     * @return This filter, the head of the chain.
+     */
+    public OutputFilter then(OutputFilter f) {
+        OutputFilter last = this;
+        while (last.next != null) {
+            last = last.next;
+        }
+        last.next = f;
+        return this;
+    }
+
+    /**
+     * Runs the value through this filter and the rest of the chain.
+     *
+     * @param dt Microseconds since the chain last ran.
+     */
+    public double apply(double v, long dt) {
+        for (OutputFilter f = this; f != null; f = f.next) {
+            v = f.step(v, dt);
+        }
+        return v;
+    }
+
+    /**
+     * Resets every filter in the chain to the given output.
+     */
+    public void resetAll(double v) {
+        for (OutputFilter f = this; f != null; f = f.next) {
+            f.reset(v);
+        }
+    }
+
+    /**
+     * Limits how fast the output may change, to keep current spikes off
+     * the battery.
+     *
+     * @param perSecond Largest change per second; 2.0 takes full forward
+     * to full reverse in a second.
+     */
+    public static OutputFilter slew(final double perSecond) {
+        return new OutputFilter() {
+            private double last = 0.0;
+
+            protected double step(double v, long dt) {
+                double max = perSecond * dt / 1000000.0;
+                if (v > last + max) {
+                    v = last + max;
+                } else if (v < last - max) {
+                    v = last - max;
+                }
+                return last = v;
+            }
+
+            protected void reset(double v) {
+                last = v;
+            }
+        };
+    }
+
+    /**
+     * Eases toward the target, covering most of the distance (1 - 1/e)
+     * in the given time, so big steps start fast and settle gently.
+     * Within 0.001 of the target it snaps there.
+     *
+     * @param seconds The time constant.
+     */
+    public static OutputFilter ramp(final double seconds) {
+        return new OutputFilter() {
+            private double last = 0.0;
+
+            protected double step(double v, long dt) {
+                double k = dt / (seconds * 1000000.0);
+                if (k < 1.0 && Math.abs(v - last) > 0.001) {
+                    v = last + (v - last) * k;
+                }
+                return last = v;
+            }
+
+            protected void reset(double v) {
+                last = v;
+            }
+        };
+    }
+
+    /**
+     * Outputs too small to move the motor are sent as 0.
+     *
+     * @param zone Largest magnitude sent as 0.
+     */
+    public static OutputFilter deadband(final double zone) {
+        return new OutputFilter() {
+            protected double step(double v, long dt) {
+                return Math.abs(v) <= zone ? 0.0 : v;
+            }
+        };
+    }
+
+    /**
+     * Multiplies the output, clamped to [-1, 1]; for a motor that is
+     * geared faster than its partner, or to cap its power.
+     *
+     * @param gain The factor.
+     */
+    public static OutputFilter scale(final double gain) {
+        return new OutputFilter() {
+            protected double step(double v, long dt) {
+                v *= gain;
+                if (v > 1.0) {
+                    return 1.0;
+                }
+                if (v < -1.0) {
+                    return -1.0;
+                }
+                return v;
+            }
+        };
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.log;
+
+import java.io.PrintStream;
+import org.oastem.frc.time.Clock;
+
+/**
+ * Logging that never stalls a control thread.
+ * <p>
+ * Messages are defined once up front with {@link #define(String)}, which
+ * gives back an id. A control thread then logs the id and up to two
+ * numbers into its own {@link LogRing}; no String is built and nothing
+ * blocks. A background thread drains every ring a few times a second and
+ * formats the lines out to the {@link LogSink} (stdout unless told
+ * otherwise). A full ring drops the record and counts it.
+ * </p>
+ */
+public class Log {
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int ERROR = 3;
+    
+    private static final String[] LEVEL_NAMES = {"DEBUG", "INFO", "WARN", "ERROR"};
+    private static final int MAX_MESSAGES = 128;
+    private static final int MAX_RINGS = 16;
+    private static final int DRAIN_PERIOD = 100; // ms
+    
+    private static String[] messages = new String[MAX_MESSAGES];
+    private static int messageCount = 0;
+    private static LogRing[] rings = new LogRing[MAX_RINGS];
+    private static int ringCount = 0;
+    // dropped by rings that have since been closed
+    private static long closedDropped = 0;
+    private static volatile int level = DEBUG;
+    
+    private static LogSink sink = new PrintSink(System.out);
+    private static Thread drainer;
+    private static volatile long written = 0;
+
+    private Log() {
+    }
+
+    /**
+     * Registers a message. Do this at startup, not on a hot path.
+     *
+     * @return The id to log it by.
+     */
+    public static synchronized int define(String text) {
+        if (messageCount >= MAX_MESSAGES) {
+            throw new IndexOutOfBoundsException("Reached the limit of " +
+                    MAX_MESSAGES + " log messages!");
+        }
+        messages[messageCount] = text;
+        return messageCount++;
+    }
+
+    /**
+     * Makes a ring for one producer thread and starts the drain thread if
+     * it isn't running yet. Close the ring when the thread is done with it
+     * to free its slot.
+     *
+     * @param name Printed with every line from this ring.
+     * @param size How many records it can hold before dropping.
+     */
+    public static synchronized LogRing ring(String name, int size) {
+        if (ringCount >= MAX_RINGS) {
+            throw new IndexOutOfBoundsException("Reached the limit of " +
+                    MAX_RINGS + " log rings!");
+        }
+        LogRing r = new LogRing(name, size);
+        rings[ringCount++] = r;
+        start();
+        return r;
+    }
+
+    public static void setLevel(int min) {
+        level = min;
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+
+    public static synchronized void setSink(LogSink s) {
+        sink = s;
+    }
+
+    private static void start() {
+        if (drainer != null) {
+            return;
+        }
+        drainer = new Thread(new Runnable() {
+            public void run() {
+                StringBuffer sb = new StringBuffer(128);
+                while (true) {
+                    drainAll(sb);
+                    Clock.getInstance().sleep(DRAIN_PERIOD);
+                }
+            }
+        });
+        drainer.setPriority(Thread.MIN_PRIORITY);
+        drainer.start();
+    }
+
+    private static void drainAll(StringBuffer sb) {
+        LogSink s;
+        int n;
+        synchronized (Log.class) {
+            s = sink;
+            n = ringCount;
+        }
+        boolean finished = false;
+        for (int i = 0; i < n; i++) {
+            written += rings[i].drain(s, sb);
+            finished |= rings[i].isFinished();
+        }
+        if (finished) {
+            removeFinished();
+        }
+    }
+
+    /**
+     * Frees the slots of closed rings that have been drained. Drain thread
+     * only, as nothing else moves rings around.
+     */
+    private static synchronized void removeFinished() {
+        int kept = 0;
+        for (int i = 0; i < ringCount; i++) {
+            LogRing r = rings[i];
+            if (r.isFinished()) {
+                closedDropped += r.getDropped();
+            } else {
+                rings[kept++] = r;
+            }
+        }
+        for (int i = kept; i < ringCount; i++) {
+            rings[i] = null;
+        }
+        ringCount = kept;
+    }
+
+    static String text(int id) {
+        return id >= 0 && id < messageCount ? messages[id] : "?";
+    }
+
+    static String levelName(int lvl) {
+        return lvl >= 0 && lvl < LEVEL_NAMES.length ? LEVEL_NAMES[lvl] : "?";
+    }
+
+    /**
+     * @return Lines written out so far.
+     */
+    public static long getWritten() {
+        return written;
+    }
+
+    /**
+     * @return Records dropped by all rings because they were full.
+     */
+    public static synchronized long getDropped() {
+        long d = closedDropped;
+        for (int i = 0; i < ringCount; i++) {
+            d += rings[i].getDropped();
+        }
+        return d;
+    }
+
+    /**
+     * Writes log lines to a stream, such as stdout or a file.
+     */
+    public static class PrintSink implements LogSink {
+        private PrintStream out;
+
+        public PrintSink(PrintStream out) {
+            this.out = out;
+        }
+
+        public void write(StringBuffer line) {
+            out.println(line);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.log;
+
+import org.oastem.frc.time.Clock;
+
+/**
+ * A bounded ring of fixed-size log records for exactly one producer
+ * thread. The producer only writes {@code tail} and the drain thread only
+ * writes {@code head}, so neither side ever waits on the other. When the
+ * ring is full the new record is dropped and counted.
+ * <p>
+ * Get one from {@link Log#ring(String, int)} for each thread that logs,
+ * and {@link #close()} it when the thread is done; there are only so many.
+ * </p>
+ */
+public class LogRing {
+    private final String name;
+    private final int size;
+    private final int[] levels;
+    private final int[] ids;
+    private final long[] times;
+    private final double[] argA;
+    private final double[] argB;
+    private final byte[] argc;
+    
+    private volatile int head = 0; // next record to drain
+    private volatile int tail = 0; // next free slot
+    private volatile long dropped = 0;
+    private volatile boolean closed = false;
+
+    LogRing(String name, int size) {
+        this.name = name;
+        this.size = size;
+        levels = new int[size];
+        ids = new int[size];
+        times = new long[size];
+        argA = new double[size];
+        argB = new double[size];
+        argc = new byte[size];
+    }
+
+    public boolean log(int level, int id) {
+        return put(level, id, 0, 0.0, 0.0);
+    }
+
+    public boolean log(int level, int id, double a) {
+        return put(level, id, 1, a, 0.0);
+    }
+
+    public boolean log(int level, int id, double a, double b) {
+        return put(level, id, 2, a, b);
+    }
+
+    private boolean put(int level, int id, int n, double a, double b) {
+        if (level < Log.getLevel()) {
+            return true;
+        }
+        if (closed) {
+            dropped++;
+            return false;
+        }
+        int t = tail;
+        int next = (t + 1) % size;
+        if (next == head) {
+            dropped++;
+            return false;
+        }
+        levels[t] = level;
+        ids[t] = id;
+        times[t] = Clock.getInstance().micros();
+        argA[t] = a;
+        argB[t] = b;
+        argc[t] = (byte) n;
+        tail = next; // publish
+        return true;
+    }
+
+    /**
+     * Formats and writes out everything queued. Drain thread only.
+     *
+     * @return How many records were written.
+     */
+    int drain(LogSink sink, StringBuffer sb) {
+        int h = head;
+        int t = tail;
+        int n = 0;
+        while (h != t) {
+            sb.setLength(0);
+            sb.append('[').append(times[h] / 1000).append("] ");
+            sb.append(Log.levelName(levels[h])).append(' ');
+            sb.append(name).append(": ").append(Log.text(ids[h]));
+            if (argc[h] > 0) sb.append(' ').append(argA[h]);
+            if (argc[h] > 1) sb.append(' ').append(argB[h]);
+            sink.write(sb);
+            h = (h + 1) % size;
+            head = h;
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Gives the ring back. What is queued is still written out, then its
+     * slot is free for another ring; records logged after this are
+     * dropped.
+     */
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * @return Whether the ring is closed and has nothing left to drain.
+     */
+    boolean isFinished() {
+        return closed && head == tail;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Records thrown away because the ring was full.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,13 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.log;
+
+/**
+ * Where drained log lines go. Only ever called from the drain thread, so
+ * it may block.
+ */
+public interface LogSink {
+    public void write(StringBuffer line);
+}
@@ -0,0 +1,29 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.metrics;
+
+/**
+ * A count that only goes up. Get one from {@link Metrics#counter(String)}.
+ */
+public class Counter {
+    final String name;
+    private volatile long count = 0;
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public void inc() {
+        count++;
+    }
+
+    public void add(long n) {
+        count += n;
+    }
+
+    public long get() {
+        return count;
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.metrics;
+
+/**
+ * The latest value of something. Get one from
+ * {@link Metrics#gauge(String)}.
+ */
+public class Gauge {
+    final String name;
+    private volatile double value = 0.0;
+
+    Gauge(String name) {
+        this.name = name;
+    }
+
+    public void set(double value) {
+        this.value = value;
+    }
+
+    public double get() {
+        return value;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.metrics;
+
+import edu.wpi.first.wpilibj.Utility;
+
+/**
+ * Counts how long something takes in fixed buckets, so recording is a few
+ * array writes and never allocates. Bucket {@code i} holds times below
+ * {@code 16 << i} microseconds; the last one holds everything longer.
+ * <p>
+ * Typical use: {@code long t = h.start(); ...; h.stop(t);}. Record from
+ * one thread; readers may see a sample or two less than there are.
+ * </p>
+ */
+public class LatencyHistogram {
+    public static final int BUCKETS = 18; // 16 us .. 1.05 s (2^20 us), then overflow
+    private static final int FIRST_SHIFT = 4;
+    
+    final String name;
+    final String countKey;
+    final String avgKey;
+    final String p99Key;
+    final String maxKey;
+    private final long[] buckets = new long[BUCKETS];
+    private volatile long count = 0;
+    private volatile long sum = 0;
+    private volatile long max = 0;
+
+    LatencyHistogram(String name) {
+        this.name = name;
+        countKey = name + " count";
+        avgKey = name + " avg us";
+        p99Key = name + " p99 us";
+        maxKey = name + " max us";
+    }
+
+    /**
+     * @return A start time to hand to {@link #stop(long)}.
+     */
+    public long start() {
+        return Utility.getFPGATime();
+    }
+
+    public void stop(long start) {
+        record(Utility.getFPGATime() - start);
+    }
+
+    public void record(long micros) {
+        int b = 0;
+        long limit = 1L << FIRST_SHIFT;
+        while (b < BUCKETS - 1 && micros >= limit) {
+            b++;
+            limit <<= 1;
+        }
+        buckets[b]++;
+        count++;
+        sum += micros;
+        if (micros > max) max = micros;
+    }
+
+    /**
+     * @return The upper edge of bucket {@code i} in microseconds, or
+     * {@link Long#MAX_VALUE} for the overflow bucket.
+     */
+    public static long getBucketLimit(int i) {
+        return i >= BUCKETS - 1 ? Long.MAX_VALUE : 1L << (FIRST_SHIFT + i);
+    }
+
+    public long getBucket(int i) {
+        return buckets[i];
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getAverage() {
+        long n = count;
+        return n == 0 ? 0 : sum / n;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @param fraction For example 0.99.
+     * @return The upper edge of the bucket the percentile falls in; the
+     * largest time seen if that is the overflow bucket.
+     */
+    public long getPercentile(double fraction) {
+        long n = count;
+        if (n == 0) {
+            return 0;
+        }
+        long want = (long) Math.ceil(n * fraction);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= want) {
+                return i == BUCKETS - 1 ? max : Math.min(getBucketLimit(i), max);
+            }
+        }
+        return max;
+    }
+
+    public synchronized void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = 0;
+        }
+        count = sum = max = 0;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.metrics;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import java.io.PrintStream;
+import org.oastem.frc.time.Clock;
+
+/**
+ * Registry of counters, gauges and latency histograms.
+ * <p>
+ * Metrics are created once, at startup, by name (asking for a name again
+ * returns the same metric). After that, updating them never allocates, so
+ * they can stay on during matches. {@link #publish()} pushes every metric
+ * to the SmartDashboard, {@link #getLine(int)} gives LCD-sized lines for a
+ * debug page, and {@link #dump(PrintStream)} prints a full snapshot.
+ * </p>
+ */
+public class Metrics {
+    private static final int MAX = 64;
+    
+    private static Counter[] counters = new Counter[MAX];
+    private static int counterCount = 0;
+    private static Gauge[] gauges = new Gauge[MAX];
+    private static int gaugeCount = 0;
+    private static LatencyHistogram[] histograms = new LatencyHistogram[MAX];
+    private static int histogramCount = 0;
+
+    private Metrics() {
+    }
+
+    public static synchronized Counter counter(String name) {
+        for (int i = 0; i < counterCount; i++) {
+            if (counters[i].name.equals(name)) return counters[i];
+        }
+        check(counterCount, "counters");
+        return counters[counterCount++] = new Counter(name);
+    }
+
+    public static synchronized Gauge gauge(String name) {
+        for (int i = 0; i < gaugeCount; i++) {
+            if (gauges[i].name.equals(name)) return gauges[i];
+        }
+        check(gaugeCount, "gauges");
+        return gauges[gaugeCount++] = new Gauge(name);
+    }
+
+    public static synchronized LatencyHistogram histogram(String name) {
+        for (int i = 0; i < histogramCount; i++) {
+            if (histograms[i].name.equals(name)) return histograms[i];
+        }
+        check(histogramCount, "histograms");
+        return histograms[histogramCount++] = new LatencyHistogram(name);
+    }
+
+    private static void check(int count, String what) {
+        if (count >= MAX) {
+            throw new IndexOutOfBoundsException("Reached the limit of " +
+                    MAX + " " + what + "!");
+        }
+    }
+
+    /**
+     * Sends every metric to the SmartDashboard. Keys are built at
+     * registration, so this only costs the network table updates.
+     */
+    public static void publish() {
+        int c, g, h;
+        synchronized (Metrics.class) {
+            c = counterCount;
+            g = gaugeCount;
+            h = histogramCount;
+        }
+        for (int i = 0; i < c; i++) {
+            SmartDashboard.putNumber(counters[i].name, counters[i].get());
+        }
+        for (int i = 0; i < g; i++) {
+            SmartDashboard.putNumber(gauges[i].name, gauges[i].get());
+        }
+        for (int i = 0; i < h; i++) {
+            LatencyHistogram hist = histograms[i];
+            SmartDashboard.putNumber(hist.countKey, hist.getCount());
+            SmartDashboard.putNumber(hist.avgKey, hist.getAverage());
+            SmartDashboard.putNumber(hist.p99Key, hist.getPercentile(0.99));
+            SmartDashboard.putNumber(hist.maxKey, hist.getMax());
+        }
+    }
+
+    /**
+     * @return How many lines {@link #getLine(int)} has, one per metric.
+     */
+    public static synchronized int getLineCount() {
+        return counterCount + gaugeCount + histogramCount;
+    }
+
+    /**
+     * A short line for the Driver Station LCD: histograms first as
+     * "name avg/p99/max" in microseconds, then gauges and counters.
+     */
+    public static synchronized String getLine(int i) {
+        if (i < histogramCount) {
+            LatencyHistogram h = histograms[i];
+            return h.name + " " + h.getAverage() + "/" + h.getPercentile(0.99)
+                    + "/" + h.getMax();
+        }
+        i -= histogramCount;
+        if (i < gaugeCount) {
+            return gauges[i].name + " " + gauges[i].get();
+        }
+        i -= gaugeCount;
+        if (i < counterCount) {
+            return counters[i].name + " " + counters[i].get();
+        }
+        return "";
+    }
+
+    /**
+     * Prints a snapshot of every metric, including histogram buckets.
+     */
+    public static synchronized void dump(PrintStream out) {
+        out.println("--- metrics @" + Clock.getInstance().millis() + " ---");
+        for (int i = 0; i < counterCount; i++) {
+            out.println("counter " + counters[i].name + " = " + counters[i].get());
+        }
+        for (int i = 0; i < gaugeCount; i++) {
+            out.println("gauge " + gauges[i].name + " = " + gauges[i].get());
+        }
+        for (int i = 0; i < histogramCount; i++) {
+            LatencyHistogram h = histograms[i];
+            out.println("histogram " + h.name + ": n=" + h.getCount()
+                    + " avg=" + h.getAverage() + "us p50=" + h.getPercentile(0.5)
+                    + "us p99=" + h.getPercentile(0.99) + "us max=" + h.getMax() + "us");
+            StringBuffer sb = new StringBuffer("  ");
+            for (int b = 0; b < LatencyHistogram.BUCKETS; b++) {
+                long n = h.getBucket(b);
+                if (n == 0) continue;
+                long limit = LatencyHistogram.getBucketLimit(b);
+                sb.append(limit == Long.MAX_VALUE ? "inf" : "<" + limit).append(':').append(n).append(' ');
+            }
+            out.println(sb.toString());
+        }
+    }
+}
@@ -9,29 +9,42 @@ import edu.wpi.first.wpilibj.PIDOutput;
 import edu.wpi.first.wpilibj.RobotDrive;
 import edu.wpi.first.wpilibj.Victor;
 import org.oastem.frc.ascent.RobotMain;
+import org.oastem.frc.control.DriveLease;
 import org.oastem.frc.control.DriveSystem;
+import org.oastem.frc.log.Log;
+import org.oastem.frc.log.LogRing;
 
 /**
  *
  * @author KTOmega
  */
 public class TargetOutput {
+    private static final int ANGLER_OUTPUT = Log.define("Angler PID Output:");
+    private static final int DRIVER_OUTPUT = Log.define("Driver PID Output:");
+    private static final int LEASE_TIMEOUT = 200; // ms
+    
     private DriveSystem drive;
+    private LogRing angleLog = Log.ring("angler", 64);
+    private LogRing driveLog = Log.ring("driver", 64);
+    // each output is written by its own PID thread
+    private DriveLease angleLease;
+    private DriveLease driveLease;
     
     // Connect this to angle output
     public PIDGainOutput angleRobotToGoal = new PIDGainOutput() {
         private double zone = 0.05;
+        private LogRing log = angleLog;
         
         public void pidWrite(double output) {
             // angle is negative when goal is to the left.
             // angle is positive when goal is to the right.
-            System.out.println("Angler PID Output: " + output);
+            log.log(Log.DEBUG, ANGLER_OUTPUT, output);
             if (output < -zone) {
-                drive.tankDrive(-output, output);
+                angleLease.tankDrive(-output, output);
             } else if (output > zone) {
-                drive.tankDrive(output, -output);
+                angleLease.tankDrive(output, -output);
             } else {
-                drive.tankDrive(0, 0);
+                angleLease.tankDrive(0, 0);
             }
         }
 
@@ -53,19 +66,20 @@ public class TargetOutput {
         private double zone = 0.5;
         private double forward = 1.0;
         private double speed = 0.33;
+        private LogRing log = driveLog;
         
         public void pidWrite(double output) {
             double goalDist = 100;
-            System.out.println("Driver PID Output: " + output);
+            log.log(Log.DEBUG, DRIVER_OUTPUT, output);
             if (output > goalDist) {
                 // too close, back up
-                drive.tankDrive(-speed, speed);
+                driveLease.tankDrive(-speed, speed);
             } else if (output < goalDist) {
                 // too far, go forward
-                drive.tankDrive(speed, speed);
+                driveLease.tankDrive(speed, speed);
             } else {
                 // yeeee
-                drive.tankDrive(0, 0);
+                driveLease.tankDrive(0, 0);
             }
         }
 
@@ -151,5 +165,18 @@ public class TargetOutput {
     
     public TargetOutput() {
         drive = DriveSystem.getInstance();
+        angleLease = drive.lease(DriveSystem.AUTO_AIM, "angler", LEASE_TIMEOUT);
+        driveLease = drive.lease(DriveSystem.AUTO_AIM, "driver pid", LEASE_TIMEOUT);
+    }
+    
+    /**
+     * Gives back the log rings and the drive leases. Call once the PID
+     * loops writing to the outputs have stopped.
+     */
+    public void close() {
+        angleLog.close();
+        driveLog.close();
+        angleLease.close();
+        driveLease.close();
     }
 }
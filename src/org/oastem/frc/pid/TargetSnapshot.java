@@ -0,0 +1,96 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.pid;
+
+/**
+ * Single-writer, many-reader holder for a frame of doubles (width, angle,
+ * height, ...). Readers always get every field from the same frame and
+ * never take a lock.
+ * <p>
+ * Each write copies the frame into a new {@link Frame} that is never
+ * changed again and publishes it through one volatile reference, so a
+ * reader that picks up the reference sees the whole frame it points to.
+ * That costs an allocation per write, which at camera rate is nothing.
+ * Only one thread may write.
+ * </p>
+ */
+public class TargetSnapshot {
+    private static class Frame {
+        final double[] data;
+        final int version;
+
+        Frame(double[] data, int version) {
+            this.data = data;
+            this.version = version;
+        }
+    }
+
+    private final int fields;
+    private volatile Frame current;
+    private volatile int lastRead = 0;
+    private volatile long overwritten = 0;
+
+    public TargetSnapshot(int fields) {
+        this.fields = fields;
+        current = new Frame(new double[fields], 0);
+    }
+    
+    public int size() {
+        return fields;
+    }
+
+    /**
+     * Publishes a new frame. Must only be called from one thread.
+     */
+    public void write(double[] values) {
+        if (values.length != fields) {
+            throw new ArrayIndexOutOfBoundsException("Parameter array length does not match internal array length");
+        }
+        Frame f = current;
+        if (f.version != 0 && lastRead != f.version) {
+            overwritten++; // nobody read the frame being replaced
+        }
+        double[] data = new double[fields];
+        System.arraycopy(values, 0, data, 0, fields);
+        current = new Frame(data, f.version + 1);
+    }
+
+    /**
+     * Copies the latest whole frame.
+     *
+     * @param dest Where to copy to; at least {@link #size()} long.
+     * @return The version of the frame copied. Versions only go up, so a
+     * reader can tell whether it has seen this frame before.
+     */
+    public int read(double[] dest) {
+        Frame f = current;
+        System.arraycopy(f.data, 0, dest, 0, fields);
+        lastRead = f.version;
+        return f.version;
+    }
+
+    /**
+     * Reads one field of the latest frame.
+     */
+    public double get(int index) {
+        Frame f = current;
+        lastRead = f.version;
+        return f.data[index];
+    }
+    
+    /**
+     * @return How many frames have been written.
+     */
+    public int getVersion() {
+        return current.version;
+    }
+
+    /**
+     * @return Frames that were replaced before any reader saw them.
+     */
+    public long getOverwritten() {
+        return overwritten;
+    }
+}
@@ -11,32 +11,46 @@ import edu.wpi.first.wpilibj.PIDSource;
  * @author KTOmega
  */
 public class TargetSource {
-    private double[] vals;
+    private TargetSnapshot vals;
     
     public TargetSource(double[] params) {
-        vals = new double[params.length];
+        vals = new TargetSnapshot(params.length);
         update(params);
     }
 
     public TargetSource(int i) {
-        vals = new double[i];
+        vals = new TargetSnapshot(i);
     }
     
+    /**
+     * Copies new values in. The caller keeps ownership of {@code params}
+     * and may reuse it for the next update. Only one thread may update.
+     */
     public void update(double[] params) {
-        if (params.length != vals.length) {
-            throw new ArrayIndexOutOfBoundsException("Parameter array length does not match internal array length");
-        }
-        vals = params;
+        vals.write(params);
     }
     
     public double get(int index) {
-        return vals[index];
+        return vals.get(index);
+    }
+    
+    /**
+     * Copies every value from the same update.
+     *
+     * @return The update's version number.
+     */
+    public int read(double[] dest) {
+        return vals.read(dest);
+    }
+    
+    public TargetSnapshot getSnapshot() {
+        return vals;
     }
     
     public PIDSource getSource(final int index) {
         return new PIDSource() {
             public double pidGet() {
-                return vals[index];
+                return vals.get(index);
             }
         };
     }
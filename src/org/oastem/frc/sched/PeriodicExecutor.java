@@ -0,0 +1,265 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.sched;
+
+import org.oastem.frc.time.Clock;
+
+/**
+ * Runs a {@link PeriodicTask} at a fixed rate, either on its own thread
+ * ({@link #start()}) or on the caller's ({@link #run()}).
+ * <p>
+ * Wake-ups are scheduled against absolute deadlines (start + n * period),
+ * so the time a tick takes doesn't push the next one back and the rate
+ * doesn't drift. If a tick runs past the next deadline it counts as an
+ * overrun; with {@link #SKIP} the missed deadlines are dropped, with
+ * {@link #CATCH_UP} they are run back to back until the loop is on
+ * schedule again. Jitter is how late a tick started relative to its
+ * deadline. All times are in microseconds.
+ * </p>
+ * <p>
+ * Each start or stop begins a new generation, and a loop only runs while
+ * its own generation is current, so a thread left over from before a
+ * quick stop and start gives up instead of ticking alongside the new
+ * one. The new thread waits for it to finish before its first tick.
+ * </p>
+ */
+public class PeriodicExecutor implements Runnable {
+    /** Drop deadlines that have already passed. */
+    public static final int SKIP = 0;
+    /** Run every missed deadline, back to back. */
+    public static final int CATCH_UP = 1;
+    
+    private final PeriodicTask task;
+    private final long period; // us
+    private final Clock clock;
+    private int policy = SKIP;
+    private Thread thread;
+    // the thread last started, which may still be finishing
+    private Thread last;
+    private boolean stopped = false;
+    private volatile int generation = 0;
+    
+    private volatile long ticks = 0;
+    private volatile long overruns = 0;
+    private volatile long skipped = 0;
+    private volatile long lastJitter = 0;
+    private volatile long maxJitter = 0;
+    private long jitterSum = 0;
+    
+    private long lastStart = -1;
+    private volatile long minPeriod = Long.MAX_VALUE;
+    private volatile long maxPeriod = 0;
+    private long periodSum = 0;
+    private long periods = 0;
+    
+    private volatile long lastCompute = 0;
+    private volatile long minCompute = Long.MAX_VALUE;
+    private volatile long maxCompute = 0;
+    private long computeSum = 0;
+
+    /**
+     * @param task The work to run.
+     * @param period The period in milliseconds.
+     */
+    public PeriodicExecutor(PeriodicTask task, int period) {
+        this(task, period, Clock.getInstance());
+    }
+
+    /**
+     * @param task The work to run.
+     * @param period The period in milliseconds.
+     * @param clock Where to get the time from.
+     */
+    public PeriodicExecutor(PeriodicTask task, int period, Clock clock) {
+        this.task = task;
+        this.period = period * 1000L;
+        this.clock = clock;
+    }
+    
+    /**
+     * @param policy {@link #SKIP} or {@link #CATCH_UP}.
+     */
+    public void setOverrunPolicy(int policy) {
+        this.policy = policy;
+    }
+    
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        stopped = false;
+        final int gen = ++generation;
+        final Thread previous = last;
+        thread = new Thread() {
+            public void run() {
+                while (previous != null && previous.isAlive()) {
+                    try {
+                        previous.join();
+                    } catch (InterruptedException e) {
+                        
+                    }
+                }
+                loop(gen);
+            }
+        };
+        last = thread;
+        thread.start();
+    }
+    
+    public synchronized void stop() {
+        stopped = true;
+        generation++;
+        thread = null;
+    }
+    
+    public synchronized boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * Runs ticks on the calling thread until {@link #stop()}. Returns at
+     * once if already stopped.
+     */
+    public void run() {
+        int gen;
+        synchronized (this) {
+            if (stopped) {
+                return;
+            }
+            gen = generation;
+        }
+        loop(gen);
+    }
+
+    private void loop(int gen) {
+        long next = clock.micros();
+        while (generation == gen) {
+            long now = clock.micros();
+            long wait = next - now;
+            if (wait > 0) {
+                clock.sleepMicros(wait);
+                continue; // recheck, sleep may wake early
+            }
+            
+            long jitter = now - next;
+            lastJitter = jitter;
+            if (jitter > maxJitter) maxJitter = jitter;
+            jitterSum += jitter;
+            
+            if (lastStart >= 0) {
+                long p = now - lastStart;
+                if (p < minPeriod) minPeriod = p;
+                if (p > maxPeriod) maxPeriod = p;
+                periodSum += p;
+                periods++;
+            }
+            lastStart = now;
+            
+            task.tick();
+            ticks++;
+            
+            long end = clock.micros();
+            long compute = end - now;
+            lastCompute = compute;
+            if (compute < minCompute) minCompute = compute;
+            if (compute > maxCompute) maxCompute = compute;
+            computeSum += compute;
+            
+            next += period;
+            if (end > next) {
+                overruns++;
+                if (policy == SKIP) {
+                    long missed = (end - next) / period + 1;
+                    skipped += missed;
+                    next += missed * period;
+                }
+            }
+        }
+    }
+    
+    public synchronized void resetStats() {
+        ticks = overruns = skipped = 0;
+        lastJitter = maxJitter = jitterSum = 0;
+        lastStart = -1;
+        minPeriod = Long.MAX_VALUE;
+        maxPeriod = periodSum = periods = 0;
+        lastCompute = maxCompute = computeSum = 0;
+        minCompute = Long.MAX_VALUE;
+    }
+    
+    public long getPeriodMicros() {
+        return period;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * @return Ticks that ran past the next deadline.
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    /**
+     * @return Deadlines dropped under {@link #SKIP}.
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return How late the last tick started.
+     */
+    public long getLastJitter() {
+        return lastJitter;
+    }
+
+    public long getMaxJitter() {
+        return maxJitter;
+    }
+
+    public long getAverageJitter() {
+        long n = ticks;
+        return n == 0 ? 0 : jitterSum / n;
+    }
+    
+    /**
+     * @return The shortest time between two tick starts.
+     */
+    public long getMinPeriod() {
+        return periods == 0 ? 0 : minPeriod;
+    }
+    
+    public long getMaxPeriod() {
+        return maxPeriod;
+    }
+    
+    public long getAveragePeriod() {
+        long n = periods;
+        return n == 0 ? 0 : periodSum / n;
+    }
+    
+    /**
+     * @return How long the last tick took to run.
+     */
+    public long getLastCompute() {
+        return lastCompute;
+    }
+    
+    public long getMinCompute() {
+        return ticks == 0 ? 0 : minCompute;
+    }
+    
+    public long getMaxCompute() {
+        return maxCompute;
+    }
+    
+    public long getAverageCompute() {
+        long n = ticks;
+        return n == 0 ? 0 : computeSum / n;
+    }
+}
@@ -0,0 +1,12 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.sched;
+
+/**
+ * Work run once per period by a {@link PeriodicExecutor}.
+ */
+public interface PeriodicTask {
+    public void tick();
+}
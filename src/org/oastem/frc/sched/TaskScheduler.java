@@ -0,0 +1,220 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.sched;
+
+import org.oastem.frc.time.Clock;
+
+/**
+ * Cooperative scheduler for the main robot loop. Subsystems register as
+ * {@link PeriodicTask}s with their own period and priority, and the loop
+ * calls {@link #runOnce()} over and over.
+ * <p>
+ * Each call sleeps until the earliest deadline, then runs every task that
+ * is due, highest priority first. Nothing preempts a running task, so a
+ * task that takes too long delays the rest; that shows up as deadline
+ * misses. A task misses a deadline when it gets to run only after its
+ * following deadline has passed too; the missed deadlines are skipped.
+ * CPU use is the time spent in a task over the time since
+ * {@link #reset()}.
+ * </p>
+ */
+public class TaskScheduler {
+    private final int max;
+    private int count = 0;
+    
+    // parallel arrays, kept sorted by priority (highest first)
+    private final PeriodicTask[] tasks;
+    private final String[] names;
+    private final long[] periods; // us
+    private final int[] priorities;
+    private final long[] deadlines;
+    private final long[] runs;
+    private final long[] misses;
+    private final long[] busy;
+    private final long[] maxBusy;
+    
+    private long started;
+    // when the last runOnce finished waiting
+    private long woke;
+    private final Clock clock;
+
+    public TaskScheduler(int size) {
+        this(size, Clock.getInstance());
+    }
+
+    public TaskScheduler(int size, Clock clock) {
+        this.clock = clock;
+        max = size;
+        tasks = new PeriodicTask[size];
+        names = new String[size];
+        periods = new long[size];
+        priorities = new int[size];
+        deadlines = new long[size];
+        runs = new long[size];
+        misses = new long[size];
+        busy = new long[size];
+        maxBusy = new long[size];
+        started = clock.micros();
+    }
+
+    /**
+     * Registers a task.
+     *
+     * @param name Shown in reports.
+     * @param task The work.
+     * @param period How often to run it, in milliseconds.
+     * @param priority Higher runs first when several tasks are due.
+     */
+    public void add(String name, PeriodicTask task, int period, int priority) {
+        if (count >= max) {
+            throw new IndexOutOfBoundsException("Reached the limit of " +
+                    max + " tasks!");
+        }
+        int i = count++;
+        while (i > 0 && priorities[i - 1] < priority) {
+            move(i - 1, i);
+            i--;
+        }
+        tasks[i] = task;
+        names[i] = name;
+        periods[i] = period * 1000L;
+        priorities[i] = priority;
+        deadlines[i] = clock.micros();
+        runs[i] = misses[i] = busy[i] = maxBusy[i] = 0;
+    }
+
+    private void move(int from, int to) {
+        tasks[to] = tasks[from];
+        names[to] = names[from];
+        periods[to] = periods[from];
+        priorities[to] = priorities[from];
+        deadlines[to] = deadlines[from];
+        runs[to] = runs[from];
+        misses[to] = misses[from];
+        busy[to] = busy[from];
+        maxBusy[to] = maxBusy[from];
+    }
+
+    /**
+     * Makes every task due now and clears the statistics. Call when a mode
+     * starts so time spent disabled doesn't count as misses.
+     */
+    public void reset() {
+        long now = clock.micros();
+        for (int i = 0; i < count; i++) {
+            deadlines[i] = now;
+            runs[i] = misses[i] = busy[i] = maxBusy[i] = 0;
+        }
+        started = now;
+    }
+
+    /**
+     * Waits for the next deadline and runs whatever is due.
+     */
+    public void runOnce() {
+        if (count == 0) {
+            return;
+        }
+        long now = clock.micros();
+        long next = deadlines[0];
+        for (int i = 1; i < count; i++) {
+            if (deadlines[i] < next) next = deadlines[i];
+        }
+        if (next > now) {
+            clock.sleepMicros(next - now);
+        }
+        woke = clock.micros();
+        
+        for (int i = 0; i < count; i++) {
+            long start = clock.micros();
+            if (deadlines[i] > start) {
+                continue;
+            }
+            
+            tasks[i].tick();
+            long end = clock.micros();
+            long took = end - start;
+            busy[i] += took;
+            if (took > maxBusy[i]) maxBusy[i] = took;
+            runs[i]++;
+            
+            long d = deadlines[i] + periods[i];
+            if (start >= d) {
+                long missed = (start - d) / periods[i] + 1;
+                misses[i] += missed;
+                d += missed * periods[i];
+            }
+            deadlines[i] = d;
+        }
+    }
+    
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return When the last {@link #runOnce()} was done waiting and
+     * started running tasks, in {@link Clock} micros. The loop's work
+     * since then is {@code micros() - getWoke()}.
+     */
+    public long getWoke() {
+        return woke;
+    }
+    
+    public int indexOf(String name) {
+        for (int i = 0; i < count; i++) {
+            if (names[i].equals(name)) return i;
+        }
+        return -1;
+    }
+    
+    public String getName(int i) {
+        return names[i];
+    }
+    
+    public long getRuns(int i) {
+        return runs[i];
+    }
+
+    /**
+     * @return Deadlines the task did not get to run in time for.
+     */
+    public long getMisses(int i) {
+        return misses[i];
+    }
+
+    /**
+     * @return The longest single run of the task, in microseconds.
+     */
+    public long getMaxRunTime(int i) {
+        return maxBusy[i];
+    }
+
+    /**
+     * @return Share of time spent in the task since the last reset, in
+     * percent.
+     */
+    public double getCpuPercent(int i) {
+        long elapsed = clock.micros() - started;
+        return elapsed <= 0 ? 0.0 : busy[i] * 100.0 / elapsed;
+    }
+
+    /**
+     * @return Share of time spent in all tasks since the last reset, in
+     * percent. The rest was spent asleep. Always 0 on a
+     * {@link org.oastem.frc.time.VirtualClock}, where work takes no time.
+     */
+    public double getTotalCpuPercent() {
+        long elapsed = clock.micros() - started;
+        if (elapsed <= 0) {
+            return 0.0;
+        }
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            total += busy[i];
+        }
+        return total * 100.0 / elapsed;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.telemetry;
+
+import org.oastem.frc.time.Clock;
+
+/**
+ * Records a fixed set of channels once per tick into a preallocated ring
+ * of primitives, so logging a whole match makes no garbage.
+ * <p>
+ * Register channels with {@link #addChannel(String)} before the first
+ * tick, {@link #set(int, double)} their values as the loop runs, then
+ * {@link #commit()} once per tick to stamp the row. The ring keeps the
+ * most recent rows; with a {@link TelemetrySink} attached (the simulator
+ * uses a memory-mapped file) every row is also handed on as it is
+ * committed. Only one thread may record.
+ * </p>
+ * <p>
+ * Event channels (names start with {@link #EVENT_PREFIX}) mark things
+ * that happen, like a shot. {@link #mark(int)} sets the channel to 1 for
+ * the next row only, so an event is never lost between ticks or repeated.
+ * </p>
+ */
+public class TelemetryRecorder {
+    public static final int MAX_CHANNELS = 32;
+    public static final String EVENT_PREFIX = "ev_";
+    
+    private final String[] names = new String[MAX_CHANNELS];
+    private int channels = 0;
+    private final int rows;
+    private double[] data;
+    private long[] times;
+    private final double[] current = new double[MAX_CHANNELS];
+    private final boolean[] events = new boolean[MAX_CHANNELS];
+    
+    private int next = 0;
+    private long committed = 0;
+    private TelemetrySink sink;
+    private boolean started = false;
+
+    /**
+     * @param rows How many rows the ring holds.
+     */
+    public TelemetryRecorder(int rows) {
+        this.rows = rows;
+    }
+
+    public int addChannel(String name) {
+        if (started) {
+            throw new IllegalStateException("Channels must be added before recording starts");
+        }
+        if (channels >= MAX_CHANNELS) {
+            throw new IndexOutOfBoundsException("Reached the limit of " +
+                    MAX_CHANNELS + " channels!");
+        }
+        names[channels] = name;
+        return channels++;
+    }
+
+    /**
+     * Adds an event channel.
+     *
+     * @param name The event's name, without the prefix.
+     */
+    public int addEventChannel(String name) {
+        int c = addChannel(EVENT_PREFIX + name);
+        events[c] = true;
+        return c;
+    }
+
+    /**
+     * Records that an event happened; it shows up in the next row.
+     */
+    public void mark(int channel) {
+        current[channel] = 1.0;
+    }
+
+    public void setSink(TelemetrySink sink) {
+        this.sink = sink;
+    }
+
+    public void set(int channel, double value) {
+        current[channel] = value;
+    }
+
+    public void set(int channel, boolean value) {
+        current[channel] = value ? 1.0 : 0.0;
+    }
+
+    /**
+     * Stamps the current channel values as one row.
+     */
+    public void commit() {
+        commit(Clock.getInstance().micros());
+    }
+
+    public void commit(long time) {
+        if (!started) {
+            start();
+        }
+        times[next] = time;
+        System.arraycopy(current, 0, data, next * channels, channels);
+        next = (next + 1) % rows;
+        committed++;
+        if (sink != null) {
+            sink.write(time, current, channels);
+        }
+        for (int i = 0; i < channels; i++) {
+            if (events[i]) current[i] = 0.0;
+        }
+    }
+
+    private void start() {
+        started = true;
+        data = new double[rows * channels];
+        times = new long[rows];
+        if (sink != null) {
+            String[] n = new String[channels];
+            System.arraycopy(names, 0, n, 0, channels);
+            sink.begin(n, channels);
+        }
+    }
+
+    public void close() {
+        if (sink != null) {
+            sink.close();
+        }
+    }
+    
+    public int getChannelCount() {
+        return channels;
+    }
+    
+    public String getChannelName(int channel) {
+        return names[channel];
+    }
+
+    /**
+     * @return Rows committed since recording started, including ones the
+     * ring has since overwritten.
+     */
+    public long getCommitted() {
+        return committed;
+    }
+
+    /**
+     * @return How many rows are still in the ring.
+     */
+    public int getAvailable() {
+        return (int) Math.min(committed, rows);
+    }
+
+    /**
+     * Reads a row back out of the ring.
+     *
+     * @param age 0 for the newest row, 1 for the one before, and so on.
+     * @param dest Receives the channel values.
+     * @return The row's time, or -1 if it is no longer in the ring.
+     */
+    public long getRow(int age, double[] dest) {
+        if (age >= getAvailable()) {
+            return -1;
+        }
+        int r = (next - 1 - age + rows) % rows;
+        System.arraycopy(data, r * channels, dest, 0, channels);
+        return times[r];
+    }
+}
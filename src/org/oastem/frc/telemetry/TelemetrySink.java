@@ -0,0 +1,24 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.telemetry;
+
+/**
+ * Takes recorded telemetry rows somewhere more permanent than the ring.
+ * Called on the recording thread, so it must not block.
+ */
+public interface TelemetrySink {
+    /**
+     * Called once before the first row.
+     */
+    public void begin(String[] channels, int count);
+
+    /**
+     * @param time FPGA time of the row in microseconds.
+     * @param row Channel values; only the first {@code count} are used.
+     */
+    public void write(long time, double[] row, int count);
+
+    public void close();
+}
@@ -0,0 +1,67 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.time;
+
+/**
+ * Where the robot code gets the time and goes to sleep. Everything that
+ * paces or times control work goes through {@link #getInstance()} instead
+ * of System.currentTimeMillis(), Thread.sleep() or Timer.delay(), so a
+ * simulation can swap in a {@link VirtualClock} and run a match as fast
+ * as the CPU allows.
+ * <p>
+ * Times are counted from an arbitrary start, not the epoch; only
+ * differences mean anything.
+ * </p>
+ */
+public abstract class Clock {
+    private static volatile Clock instance = new RealClock();
+
+    public static Clock getInstance() {
+        return instance;
+    }
+
+    /**
+     * Replaces the clock. Do this before the robot code starts; threads
+     * already asleep stay on the old clock until they wake.
+     */
+    public static void setInstance(Clock clock) {
+        instance = clock;
+    }
+
+    /**
+     * @return The time in microseconds.
+     */
+    public abstract long micros();
+
+    /**
+     * @return The time in milliseconds.
+     */
+    public long millis() {
+        return micros() / 1000;
+    }
+
+    /**
+     * Sleeps the calling thread. An interrupt ends the sleep early.
+     *
+     * @param us How long, in microseconds.
+     */
+    public abstract void sleepMicros(long us);
+
+    /**
+     * @param ms How long, in milliseconds.
+     */
+    public void sleep(long ms) {
+        sleepMicros(ms * 1000);
+    }
+
+    /**
+     * Same as Timer.delay().
+     *
+     * @param seconds How long, in seconds.
+     */
+    public void delay(double seconds) {
+        sleepMicros((long) (seconds * 1e6));
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.time;
+
+import edu.wpi.first.wpilibj.Utility;
+
+/**
+ * The cRIO's FPGA timer and Thread.sleep(). Sleeps are rounded up to the
+ * next millisecond, which is as fine as the VM goes.
+ */
+public class RealClock extends Clock {
+
+    public long micros() {
+        return Utility.getFPGATime();
+    }
+
+    public void sleepMicros(long us) {
+        if (us <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep((us + 999) / 1000);
+        } catch (InterruptedException e) {
+            
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * To change this template, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package org.oastem.frc.time;
+
+import java.util.Vector;
+
+/**
+ * Simulated time that only moves when every thread using it is asleep.
+ * <p>
+ * A thread joins with {@link #enter()} or the first time it sleeps. Once
+ * every member is asleep, time jumps straight to the earliest wake-up and
+ * that one thread runs until it sleeps again; ties go to whoever joined
+ * first. Members never run side by side and their work takes no simulated
+ * time, so a whole match of control loops runs as fast as the CPU can do
+ * the work and comes out the same on every run.
+ * </p>
+ * <p>
+ * A member that blocks on anything other than this clock (a socket, a
+ * join, a lock held by a sleeping member) holds time still until it comes
+ * back, so call {@link #leave()} first. Members that die are dropped on
+ * their own. Single-threaded tests can skip sleeping altogether and push
+ * time with {@link #advance(long)}.
+ * </p>
+ */
+public class VirtualClock extends Clock {
+    // how often a sleeper looks for members that died while awake (ms)
+    private static final long POLL = 10;
+
+    private long now;
+    private final Vector members = new Vector();
+    
+    private static class Member {
+        final Thread thread;
+        boolean asleep = false;
+        long wake = 0;
+
+        Member(Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    public VirtualClock() {
+        this(0);
+    }
+
+    /**
+     * @param start The starting time in microseconds.
+     */
+    public VirtualClock(long start) {
+        now = start;
+    }
+
+    public synchronized long micros() {
+        return now;
+    }
+
+    public synchronized void sleepMicros(long us) {
+        Member m = find(Thread.currentThread(), true);
+        if (us <= 0) {
+            return;
+        }
+        m.wake = now + us;
+        m.asleep = true;
+        step();
+        while (m.asleep) {
+            try {
+                wait(POLL);
+            } catch (InterruptedException e) {
+                m.asleep = false;
+                break;
+            }
+            step();
+        }
+    }
+
+    /**
+     * Moves time forward by hand. Sleepers that come due run in turn.
+     *
+     * @param us How far, in microseconds.
+     */
+    public synchronized void advance(long us) {
+        if (us > 0) {
+            now += us;
+            step();
+        }
+    }
+
+    /**
+     * Makes the calling thread a member, so time holds still while it
+     * runs. Call it before starting the threads that will sleep on the
+     * clock, or they may run time on without it.
+     */
+    public synchronized void enter() {
+        find(Thread.currentThread(), true);
+    }
+
+    /**
+     * Makes a thread that has just been started a member before it gets
+     * the chance to sleep, so it joins at a known point in time.
+     */
+    public synchronized void enter(Thread t) {
+        find(t, true);
+    }
+
+    /**
+     * Takes the calling thread out of the clock, so time moves on without
+     * it. It joins again the next time it sleeps.
+     */
+    public synchronized void leave() {
+        Member m = find(Thread.currentThread(), false);
+        if (m != null) {
+            members.removeElement(m);
+            step();
+        }
+    }
+
+    /**
+     * @return Threads currently taking part.
+     */
+    public synchronized int getMembers() {
+        return members.size();
+    }
+
+    private Member find(Thread t, boolean add) {
+        for (int i = 0; i < members.size(); i++) {
+            Member m = (Member) members.elementAt(i);
+            if (m.thread == t) {
+                return m;
+            }
+        }
+        if (!add) {
+            return null;
+        }
+        Member m = new Member(t);
+        members.addElement(m);
+        return m;
+    }
+
+    /**
+     * If everyone is asleep, jumps to the earliest wake-up and lets that
+     * member go.
+     */
+    private void step() {
+        Member next = null;
+        int i = 0;
+        while (i < members.size()) {
+            Member m = (Member) members.elementAt(i);
+            if (!m.thread.isAlive()) {
+                members.removeElementAt(i);
+                continue;
+            }
+            if (!m.asleep) {
+                return;
+            }
+            // strictly earlier, so ties go to the first to join
+            if (next == null || m.wake < next.wake) {
+                next = m;
+            }
+            i++;
+        }
+        if (next == null) {
+            return;
+        }
+        if (next.wake > now) {
+            now = next.wake;
+        }
+        // marked awake here, not when the thread gets going, so nobody
+        // else can move time on in between
+        next.asleep = false;
+        notifyAll();
+    }
+}